@@ -0,0 +1,88 @@
+package hotelchain;
+
+import java.util.Calendar;
+
+/**
+ * Describes which archived Reservations to find in a ReservationArchive: those of a guest, at a hotel, with a reservation ID
+ * or overlapping a range of dates, or any combination of these.
+ * @author Joost Janssen
+ */
+public class ArchiveQuery
+{
+	private final int guestID, reservationID;
+	private final String hotelName;
+	private final int fromDay, toDay;
+
+	/**
+	 * Constructs a new ArchiveQuery. Criteria that are not to be used are given as -1 or null.
+	 * @param _guestID Guest ID number of the reservations to find, or -1 for any guest.
+	 * @param _hotelName Name of the hotel of the reservations to find, or null for any hotel.
+	 * @param _reservationID ID number of the reservation to find, or -1 for any reservation.
+	 * @param from Reservations ending after this date are found, or null for no limit.
+	 * @param to Reservations starting before this date are found, or null for no limit.
+	 */
+	public ArchiveQuery(int _guestID, String _hotelName, int _reservationID, Calendar from, Calendar to)
+	{
+		guestID = _guestID;
+		hotelName = _hotelName;
+		reservationID = _reservationID;
+		fromDay = from == null ? Integer.MIN_VALUE : BinaryCodec.toEpochDay(from);
+		toDay = to == null ? Integer.MAX_VALUE : BinaryCodec.toEpochDay(to);
+	}
+
+	/**
+	 * Checks whether a given Reservation meets all criteria of this query.
+	 * @param r Reservation to check.
+	 * @return Returns whether the given reservation is to be found.
+	 */
+	protected boolean matches(Reservation r)
+	{
+		if(guestID != -1 && r.getGuestID() != guestID)
+			return false;
+		if(reservationID != -1 && r.getID() != reservationID)
+			return false;
+		if(hotelName != null && !hotelName.equals(r.getHotelName()))
+			return false;
+		return r.getStartDay() < toDay && r.getEndDay() > fromDay;
+	}
+
+	/**
+	 * @return Returns the guest ID number of the reservations to find, or -1 for any guest.
+	 */
+	protected int getGuestID()
+	{
+		return guestID;
+	}
+
+	/**
+	 * @return Returns the ID number of the reservation to find, or -1 for any reservation.
+	 */
+	protected int getReservationID()
+	{
+		return reservationID;
+	}
+
+	/**
+	 * @return Returns the name of the hotel of the reservations to find, or null for any hotel.
+	 */
+	protected String getHotelName()
+	{
+		return hotelName;
+	}
+
+	/**
+	 * @return Returns the epoch day after which the reservations to find end.
+	 */
+	protected int getFromDay()
+	{
+		return fromDay;
+	}
+
+	/**
+	 * @return Returns the epoch day before which the reservations to find start.
+	 */
+	protected int getToDay()
+	{
+		return toDay;
+	}
+}
@@ -0,0 +1,265 @@
+package hotelchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Finds the words within a given edit distance of a query without comparing the query to every word. A BK-tree keeps
+ * each word in a node whose children are the words at each edit distance from it. As the edit distance is a metric,
+ * a word within distance k of the query lies in a child whose distance to the node differs at most k from the distance
+ * between the query and the node, so only those children are visited.
+ *
+ * Each word holds the sorted IDs of the records containing it. A word removed from all records stays in the tree
+ * to guide searches, and the tree is rebuilt from the remaining words once half of its words were removed.
+ * The edit distance is the Levenshtein distance: the number of characters inserted, deleted or replaced.
+ * Words are matched exactly; callers normalize them, for example to lower case. Not thread-safe.
+ * @author Joost Janssen
+ */
+public class BKTree
+{
+	private Node root;
+	private int words, removedWords;
+
+	/**
+	 * Adds the ID of a record containing a given word.
+	 * @param word Normalized word.
+	 * @param ID ID of the record.
+	 */
+	protected void add(String word, int ID)
+	{
+		if(root == null)
+		{
+			root = new Node(word);
+			words++;
+		}
+		Node node = root;
+		while(true)
+		{
+			int distance = getDistance(word, node.word);
+			if(distance == 0)
+				break;
+			Node child = node.getChild(distance);
+			if(child == null)
+			{
+				child = new Node(word);
+				node.setChild(distance, child);
+				words++;
+			}
+			node = child;
+		}
+
+		if(node.count == 0 && node.IDs != null)
+			removedWords--;
+		node.add(ID);
+	}
+
+	/**
+	 * Removes the ID of a record containing a given word. Rebuilds the tree once half of its words are not contained
+	 * by any record.
+	 * @param word Normalized word.
+	 * @param ID ID of the record.
+	 * @return Returns whether the ID was found.
+	 */
+	protected boolean remove(String word, int ID)
+	{
+		Node node = root;
+		while(node != null)
+		{
+			int distance = getDistance(word, node.word);
+			if(distance == 0)
+				break;
+			node = node.getChild(distance);
+		}
+		if(node == null || !node.remove(ID))
+			return false;
+
+		if(node.count == 0 && ++removedWords * 2 >= words)
+			rebuild();
+		return true;
+	}
+
+	/**
+	 * Finds the records containing a word within a given edit distance of a query.
+	 * @param query Normalized query.
+	 * @param maxDistance Largest edit distance of the words to be found.
+	 * @return Returns the IDs of the records containing such a word, in ascending order.
+	 */
+	protected int[] find(String query, int maxDistance)
+	{
+		ArrayList<Node> found = new ArrayList<Node>();
+		if(root != null)
+		{
+			ArrayList<Node> pending = new ArrayList<Node>();
+			pending.add(root);
+			while(!pending.isEmpty())
+			{
+				Node node = pending.remove(pending.size()-1);
+				int distance = getDistance(query, node.word);
+				if(distance <= maxDistance && node.count > 0)
+					found.add(node);
+				if(node.children == null)
+					continue;
+				for(int d=Math.max(1, distance - maxDistance); d<=distance + maxDistance && d<node.children.length; d++)
+					if(node.children[d] != null)
+						pending.add(node.children[d]);
+			}
+		}
+
+		int size = 0;
+		for(int i=0; i<found.size(); i++)
+			size += found.get(i).count;
+		int[] IDs = new int[size];
+		int i = 0;
+		for(int n=0; n<found.size(); n++)
+		{
+			System.arraycopy(found.get(n).IDs, 0, IDs, i, found.get(n).count);
+			i += found.get(n).count;
+		}
+		Arrays.sort(IDs);
+
+		int distinct = 0;
+		for(i=0; i<IDs.length; i++)
+			if(i == 0 || IDs[i] != IDs[i-1])
+				IDs[distinct++] = IDs[i];
+		return Arrays.copyOf(IDs, distinct);
+	}
+
+	/**
+	 * @return Returns the number of words in the tree, including removed words that have not been dropped yet.
+	 */
+	protected int size()
+	{
+		return words;
+	}
+
+	/**
+	 * Builds the tree again from the words still contained by any record, dropping the removed words.
+	 */
+	private void rebuild()
+	{
+		ArrayList<Node> remaining = new ArrayList<Node>();
+		ArrayList<Node> pending = new ArrayList<Node>();
+		if(root != null)
+			pending.add(root);
+		while(!pending.isEmpty())
+		{
+			Node node = pending.remove(pending.size()-1);
+			if(node.count > 0)
+				remaining.add(node);
+			if(node.children != null)
+				for(int d=0; d<node.children.length; d++)
+					if(node.children[d] != null)
+						pending.add(node.children[d]);
+		}
+
+		root = null;
+		words = 0;
+		removedWords = 0;
+		for(int i=0; i<remaining.size(); i++)
+		{
+			Node node = remaining.get(i);
+			for(int j=0; j<node.count; j++)
+				add(node.word, node.IDs[j]);
+		}
+	}
+
+	/**
+	 * Computes the Levenshtein distance between two words, keeping only two rows of the distance table.
+	 * @param a First word.
+	 * @param b Second word.
+	 * @return Returns the edit distance between the given words.
+	 */
+	protected static int getDistance(String a, String b)
+	{
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for(int j=0; j<=b.length(); j++)
+			previous[j] = j;
+		for(int i=1; i<=a.length(); i++)
+		{
+			current[0] = i;
+			for(int j=1; j<=b.length(); j++)
+			{
+				int replace = previous[j-1] + (a.charAt(i-1) == b.charAt(j-1) ? 0 : 1);
+				current[j] = Math.min(replace, Math.min(previous[j], current[j-1]) + 1);
+			}
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	/**
+	 * A word of the tree, together with the sorted IDs of the records containing it and its children by distance.
+	 */
+	private static class Node
+	{
+		private final String word;
+		private Node[] children;	// Children by edit distance to this word, or null if there are none.
+		private int[] IDs;
+		private int count;
+
+		/**
+		 * Constructs a node without IDs and children.
+		 * @param _word Word.
+		 */
+		private Node(String _word)
+		{
+			word = _word;
+		}
+
+		/**
+		 * @param distance Edit distance, at least 1.
+		 * @return Returns the child at the given distance, or null if there is none.
+		 */
+		private Node getChild(int distance)
+		{
+			return children != null && distance < children.length ? children[distance] : null;
+		}
+
+		/**
+		 * @param distance Edit distance, at least 1.
+		 * @param child Child at the given distance.
+		 */
+		private void setChild(int distance, Node child)
+		{
+			if(children == null || distance >= children.length)
+				children = children == null ? new Node[distance + 1] : Arrays.copyOf(children, distance + 1);
+			children[distance] = child;
+		}
+
+		/**
+		 * Adds a given ID, unless this node holds it already.
+		 * @param ID ID.
+		 */
+		private void add(int ID)
+		{
+			if(IDs == null)
+				IDs = new int[1];
+			int position = Arrays.binarySearch(IDs, 0, count, ID);
+			if(position >= 0)
+				return;
+			position = -position - 1;
+			if(count == IDs.length)
+				IDs = Arrays.copyOf(IDs, count * 2);
+			System.arraycopy(IDs, position, IDs, position + 1, count - position);
+			IDs[position] = ID;
+			count++;
+		}
+
+		/**
+		 * Removes a given ID.
+		 * @param ID ID.
+		 * @return Returns whether this node held the ID.
+		 */
+		private boolean remove(int ID)
+		{
+			int position = IDs == null ? -1 : Arrays.binarySearch(IDs, 0, count, ID);
+			if(position < 0)
+				return false;
+			System.arraycopy(IDs, position + 1, IDs, position, --count - position);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,439 @@
+package hotelchain;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+
+/**
+ * Encodes and decodes Reservations, Guests, Hotels and Rooms in a compact, versioned binary format,
+ * replacing Java serialization for the files written by FileHandler and the entries written by Journal.
+ *
+ * A file consists of a header (MAGIC, VERSION, kind of records and the counter), a dictionary of all
+ * strings used by its records, followed by the records. Records store strings as their index in the dictionary,
+ * dates as epoch days and all numbers as fixed-width integers. Journal entries are single records that store
+ * their strings inline instead.
+ *
+ * Can be run as an application to convert files written using Java serialization to this format.
+ * @author Joost Janssen
+ */
+public class BinaryCodec
+{
+	protected final static int MAGIC = 0x48434246;		// "HCBF"
+	protected final static short VERSION = 1;
+
+	private final static byte EMPTY = 0;
+	private final static byte RESERVATION = 1;
+	private final static byte GUEST = 2;
+	private final static byte HOTEL = 3;
+
+	private int IDcounter;
+	private ArrayList<String> dictionary;
+	private HashMap<String, Integer> dictionaryIDs;
+
+	/**
+	 * Writes a given ArrayList of Reservations, Guests or Hotels and a counter to a given stream.
+	 * @param outputStream Stream to write to.
+	 * @param list ArrayList to be written. May be null, which is written as an empty list.
+	 * @param _IDcounter Counter to be written.
+	 * @throws IOException if the stream could not be written or the list contains objects of an unsupported type.
+	 */
+	protected void writeList(DataOutputStream outputStream, ArrayList<?> list, int _IDcounter) throws IOException
+	{
+		IDcounter = _IDcounter;
+		byte kind = EMPTY;
+		if(list != null && !list.isEmpty())
+			kind = getKind(list.get(0));
+
+		dictionary = new ArrayList<String>();
+		dictionaryIDs = new HashMap<String, Integer>();
+		if(kind != EMPTY)
+			for(int i=0; i<list.size(); i++)
+				addToDictionary(list.get(i), kind);
+
+		outputStream.writeInt(MAGIC);
+		outputStream.writeShort(VERSION);
+		outputStream.writeByte(kind);
+		outputStream.writeInt(IDcounter);
+
+		outputStream.writeInt(dictionary.size());
+		for(int i=0; i<dictionary.size(); i++)
+			outputStream.writeUTF(dictionary.get(i));
+
+		if(kind == EMPTY)
+			outputStream.writeInt(0);
+		else
+		{
+			outputStream.writeInt(list.size());
+			for(int i=0; i<list.size(); i++)
+				writeRecord(outputStream, list.get(i), kind);
+		}
+		dictionary = null;
+		dictionaryIDs = null;
+	}
+
+	/**
+	 * Reads an ArrayList and a counter written by writeList from a given stream and stores the counter.
+	 * @param inputStream Stream to read from.
+	 * @return Returns the ArrayList read.
+	 * @throws IOException if the stream could not be read or is not in a supported version of this format.
+	 */
+	protected ArrayList<?> readList(DataInputStream inputStream) throws IOException
+	{
+		if(inputStream.readInt() != MAGIC)
+			throw new IOException("Not a hotelchain file.");
+		short version = inputStream.readShort();
+		if(version > VERSION)
+			throw new IOException("Unsupported file version " + version + ".");
+
+		byte kind = inputStream.readByte();
+		IDcounter = inputStream.readInt();
+
+		int dictionarySize = inputStream.readInt();
+		dictionary = new ArrayList<String>(dictionarySize);
+		for(int i=0; i<dictionarySize; i++)
+			dictionary.add(inputStream.readUTF());
+
+		int size = inputStream.readInt();
+		ArrayList<Object> list = new ArrayList<Object>(size);
+		for(int i=0; i<size; i++)
+			list.add(readRecord(inputStream, kind));
+
+		dictionary = null;
+		return list;
+	}
+
+	/**
+	 * Writes a given JournalEntry to a given stream, storing the strings of its payload inline.
+	 * @param outputStream Stream to write to.
+	 * @param entry JournalEntry to be written.
+	 * @throws IOException if the stream could not be written or the payload is of an unsupported type.
+	 */
+	protected void writeEntry(DataOutputStream outputStream, JournalEntry entry) throws IOException
+	{
+		byte kind = EMPTY;
+		if(entry.getPayload() != null)
+			kind = getKind(entry.getPayload());
+
+		outputStream.writeByte(entry.getType());
+		outputStream.writeInt(entry.getID());
+		outputStream.writeByte(kind);
+		if(kind != EMPTY)
+			writeRecord(outputStream, entry.getPayload(), kind);
+	}
+
+	/**
+	 * Reads a JournalEntry written by writeEntry from a given stream.
+	 * @param inputStream Stream to read from.
+	 * @return Returns the JournalEntry read.
+	 * @throws IOException if the stream could not be read.
+	 */
+	protected JournalEntry readEntry(DataInputStream inputStream) throws IOException
+	{
+		int type = inputStream.readByte();
+		int id = inputStream.readInt();
+		byte kind = inputStream.readByte();
+
+		Object payload = null;
+		if(kind != EMPTY)
+			payload = readRecord(inputStream, kind);
+
+		return new JournalEntry(type, id, payload);
+	}
+
+	/**
+	 * @return Returns the counter read by the last call to readList.
+	 */
+	protected int getIDcounter()
+	{
+		return IDcounter;
+	}
+
+	/**
+	 * Determines the kind of record a given object is written as.
+	 * @param object Object to be written.
+	 * @return Returns RESERVATION, GUEST or HOTEL.
+	 * @throws IOException if the object is of an unsupported type.
+	 */
+	private byte getKind(Object object) throws IOException
+	{
+		if(object instanceof Reservation)
+			return RESERVATION;
+		if(object instanceof Guest)
+			return GUEST;
+		if(object instanceof Hotel)
+			return HOTEL;
+		throw new IOException("Unsupported type " + object.getClass().getName() + ".");
+	}
+
+	/**
+	 * Adds all strings of a given object to the dictionary.
+	 * @param object Object whose strings are to be added.
+	 * @param kind Kind of record the object is written as.
+	 */
+	private void addToDictionary(Object object, byte kind)
+	{
+		if(kind == RESERVATION)
+		{
+			Reservation r = (Reservation) object;
+			addToDictionary(r.getHotelName());
+			addToDictionary(r.getRoomType());
+		}
+		else if(kind == GUEST)
+		{
+			Guest g = (Guest) object;
+			addToDictionary(g.getName());
+			addToDictionary(g.getAddress());
+			addToDictionary(g.getCity());
+			addToDictionary(g.getCountry());
+		}
+		else if(kind == HOTEL)
+		{
+			Hotel h = (Hotel) object;
+			addToDictionary(h.getName());
+			for(int i=0; i<h.getRoomTypes().length; i++)
+				addToDictionary(h.getRoomTypes()[i]);
+			for(int i=0; i<h.getRooms().size(); i++)
+				addToDictionary(h.getRooms().get(i).toString());
+		}
+	}
+
+	/**
+	 * Adds a given string to the dictionary if it is not in the dictionary yet.
+	 * @param string String to be added.
+	 */
+	private void addToDictionary(String string)
+	{
+		if(string != null && !dictionaryIDs.containsKey(string))
+		{
+			dictionaryIDs.put(string, dictionary.size());
+			dictionary.add(string);
+		}
+	}
+
+	/**
+	 * Writes a single object as a record of the given kind.
+	 * @param outputStream Stream to write to.
+	 * @param object Object to be written.
+	 * @param kind Kind of record.
+	 * @throws IOException if the stream could not be written.
+	 */
+	private void writeRecord(DataOutputStream outputStream, Object object, byte kind) throws IOException
+	{
+		if(kind == RESERVATION)
+		{
+			Reservation r = (Reservation) object;
+			outputStream.writeInt(r.getID());
+			outputStream.writeInt(r.getGuestID());
+			writeString(outputStream, r.getHotelName());
+			outputStream.writeInt(r.getRoomNumber());
+			writeString(outputStream, r.getRoomType());
+			outputStream.writeInt(r.getStartDay());
+			outputStream.writeInt(r.getEndDay());
+			outputStream.writeInt(r.getNightlyRate());
+			outputStream.writeBoolean(r.isCancelled());
+		}
+		else if(kind == GUEST)
+		{
+			Guest g = (Guest) object;
+			outputStream.writeInt(g.getID());
+			writeString(outputStream, g.getName());
+			writeString(outputStream, g.getAddress());
+			writeString(outputStream, g.getCity());
+			writeString(outputStream, g.getCountry());
+		}
+		else if(kind == HOTEL)
+		{
+			Hotel h = (Hotel) object;
+			writeString(outputStream, h.getName());
+			outputStream.writeInt(h.getNumberOfRooms());
+			outputStream.writeInt(h.getRoomTypes().length);
+			for(int i=0; i<h.getRoomTypes().length; i++)
+				writeString(outputStream, h.getRoomTypes()[i]);
+
+			ArrayList<Room> rooms = h.getRooms();
+			outputStream.writeInt(rooms.size());
+			for(int i=0; i<rooms.size(); i++)
+			{
+				writeString(outputStream, rooms.get(i).toString());
+				outputStream.writeInt(rooms.get(i).getRoomNumber());
+				outputStream.writeInt(rooms.get(i).getNumberOfBeds());
+				outputStream.writeInt(rooms.get(i).getRate());
+			}
+		}
+	}
+
+	/**
+	 * Reads a single record of the given kind.
+	 * @param inputStream Stream to read from.
+	 * @param kind Kind of record.
+	 * @return Returns the Reservation, Guest or Hotel read.
+	 * @throws IOException if the stream could not be read or the kind of record is unknown.
+	 */
+	private Object readRecord(DataInputStream inputStream, byte kind) throws IOException
+	{
+		if(kind == RESERVATION)
+		{
+			int id = inputStream.readInt();
+			int guestID = inputStream.readInt();
+			String hotelName = readString(inputStream);
+			int roomNumber = inputStream.readInt();
+			String roomType = readString(inputStream);
+			int startDay = inputStream.readInt();
+			int endDay = inputStream.readInt();
+			int nightlyRate = inputStream.readInt();
+
+			Reservation r = new Reservation(guestID, hotelName, roomNumber, roomType, startDay, endDay, nightlyRate, id);
+			if(inputStream.readBoolean())
+				r.cancel();
+			return r;
+		}
+		else if(kind == GUEST)
+		{
+			int id = inputStream.readInt();
+			return new Guest(readString(inputStream), readString(inputStream), readString(inputStream), readString(inputStream), id);
+		}
+		else if(kind == HOTEL)
+		{
+			String name = readString(inputStream);
+			int numberOfRooms = inputStream.readInt();
+			String[] roomTypes = new String[inputStream.readInt()];
+			for(int i=0; i<roomTypes.length; i++)
+				roomTypes[i] = readString(inputStream);
+
+			Hotel h = new Hotel(name, numberOfRooms, roomTypes);
+			int rooms = inputStream.readInt();
+			for(int i=0; i<rooms; i++)
+			{
+				String type = readString(inputStream);
+				h.addRoom(createRoom(type, inputStream.readInt(), inputStream.readInt(), inputStream.readInt()));
+			}
+			return h;
+		}
+		throw new IOException("Unknown record kind " + kind + ".");
+	}
+
+	/**
+	 * Writes a string as its dictionary index, or inline if no dictionary is in use.
+	 * @param outputStream Stream to write to.
+	 * @param string String to be written, may be null.
+	 * @throws IOException if the stream could not be written.
+	 */
+	private void writeString(DataOutputStream outputStream, String string) throws IOException
+	{
+		if(dictionaryIDs != null)
+			outputStream.writeInt(string == null ? -1 : dictionaryIDs.get(string));
+		else
+		{
+			outputStream.writeBoolean(string != null);
+			if(string != null)
+				outputStream.writeUTF(string);
+		}
+	}
+
+	/**
+	 * Reads a string written by writeString.
+	 * @param inputStream Stream to read from.
+	 * @return Returns the string read, may be null.
+	 * @throws IOException if the stream could not be read.
+	 */
+	private String readString(DataInputStream inputStream) throws IOException
+	{
+		if(dictionary != null)
+		{
+			int id = inputStream.readInt();
+			return id == -1 ? null : dictionary.get(id);
+		}
+		if(inputStream.readBoolean())
+			return inputStream.readUTF();
+		return null;
+	}
+
+	/**
+	 * Creates a Room of the type given by its string representation.
+	 * @param type Type of Room, as returned by its toString().
+	 * @param roomNumber Room number.
+	 * @param beds Number of beds.
+	 * @param rate Nightly rate.
+	 * @return Returns the Room created.
+	 */
+	private Room createRoom(String type, int roomNumber, int beds, int rate)
+	{
+		if("Single".equals(type))
+			return new SingleRoom(roomNumber, rate);
+		if("Double".equals(type))
+			return new DoubleRoom(roomNumber, rate);
+		if("Queensize".equals(type))
+			return new QueensizeRoom(roomNumber, rate);
+		if("Kingsize".equals(type))
+			return new KingsizeRoom(roomNumber, rate);
+		if("Family".equals(type))
+			return new FamilySuite(roomNumber, rate);
+		if("Bridal".equals(type))
+			return new BridalSuite(roomNumber, rate);
+		return new Room(roomNumber, beds, rate);
+	}
+
+	/**
+	 * Converts the date of a given Calendar to the number of days since 1970-01-01.
+	 * @param date Date in Calendar format.
+	 * @return Returns the epoch day of the given date.
+	 */
+	protected static int toEpochDay(Calendar date)
+	{
+		return (int) LocalDate.of(date.get(Calendar.YEAR), date.get(Calendar.MONTH) + 1, date.get(Calendar.DAY_OF_MONTH)).toEpochDay();
+	}
+
+	/**
+	 * Converts a given number of days since 1970-01-01 to the start of that day in Calendar format.
+	 * @param epochDay Epoch day.
+	 * @return Returns the given date in Calendar format.
+	 */
+	protected static Calendar toCalendar(int epochDay)
+	{
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		return new GregorianCalendar(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth());
+	}
+
+	/**
+	 * Converts the given files, or the files of the hotel chain if none are given, from Java serialization to this format.
+	 * The files of the hotel chain are the hotels configuration, the registered guests, the reservations of every hotel
+	 * found on disk, and the reservations and archive files of earlier versions. Files already in this format are rewritten unchanged.
+	 * Journals and the monthly segments of the reservation archive are always written in their own binary formats,
+	 * so they are not converted.
+	 * @param args Names of files to be converted.
+	 */
+	public static void main(String[] args)
+	{
+		ArrayList<String> filenames = new ArrayList<String>();
+		for(int i=0; i<args.length; i++)
+			filenames.add(args[i]);
+		if(filenames.isEmpty())
+		{
+			filenames.add("hotelchain.hotelsConfiguration");
+			filenames.add("hotelchain.registeredGuests");
+			ArrayList<String> keys = ReservationShard.getKeysOnDisk();
+			for(int i=0; i<keys.size(); i++)
+				filenames.add(ReservationShard.getFilename(keys.get(i)));
+			filenames.add("hotelchain.reservations");
+			filenames.add("hotelchain.reservationsArchive");
+		}
+
+		for(int i=0; i<filenames.size(); i++)
+		{
+			FileHandler file = new FileHandler(filenames.get(i));
+			if(file.createNewFile())
+				continue;
+
+			ArrayList<?> contents = file.readFile();
+			if(contents != null && file.writeFile(contents, file.getIDcounter()))
+				System.out.println("Converted " + filenames.get(i) + ": " + contents.size() + " records.");
+			else
+				System.out.println("! Could not convert " + filenames.get(i) + ".");
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package hotelchain;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * Measures the latency and allocation of booking rooms in a single hotel, comparing the booking path on epoch days
+ * with the booking path on Calendars used by earlier versions, which is reproduced here as a baseline.
+ * Both book the same stays, in batches, and report the average time and bytes allocated per booking of each batch.
+ *
+ * Can be run as an application: "java -cp hotelchain.jar hotelchain.BookingBenchmark [rooms] [bookings]".
+ * Bytes allocated are only reported on JVMs that measure them per thread.
+ * @author Joost Janssen
+ */
+public class BookingBenchmark
+{
+	private final static int BATCHES = 5;
+	private final static String ROOM_TYPE = "Double";
+
+	private final int rooms, bookings;
+	private final int[] startDays, endDays;
+
+	/**
+	 * Constructs a benchmark booking a given number of random stays of up to two weeks within the next three years.
+	 * @param _rooms Number of rooms of the hotel.
+	 * @param _bookings Number of stays to book.
+	 */
+	public BookingBenchmark(int _rooms, int _bookings)
+	{
+		rooms = _rooms;
+		bookings = _bookings;
+		startDays = new int[bookings];
+		endDays = new int[bookings];
+
+		Random random = new Random(42);
+		int today = BinaryCodec.toEpochDay(Calendar.getInstance());
+		for(int i=0; i<bookings; i++)
+		{
+			startDays[i] = today + random.nextInt(3 * 365);
+			endDays[i] = startDays[i] + 1 + random.nextInt(14);
+		}
+	}
+
+	/**
+	 * Books all stays in a new hotel using Hotel.reserveRoom on epoch days, as the reservation manager does.
+	 */
+	private void runEpochDays()
+	{
+		Hotel hotel = createHotel();
+		Guest guest = new Guest("Benchmark", "", "", "", 0);
+		int booked = 0;
+		for(int batch=0; batch<BATCHES; batch++)
+		{
+			long allocated = getAllocatedBytes();
+			long start = System.nanoTime();
+			for(int i=batch * bookings / BATCHES; i<(batch + 1) * bookings / BATCHES; i++)
+				if(hotel.reserveRoom(guest, startDays[i], endDays[i], ROOM_TYPE, i) != null)
+					booked++;
+			report("epoch days", batch, System.nanoTime() - start, getAllocatedBytes() - allocated, booked);
+		}
+	}
+
+	/**
+	 * Books all stays by scanning all rooms and all upcoming reservations, comparing Calendars using getTime()
+	 * and computing the total rate year by year, as Hotel and Reservation did before dates were kept as epoch days.
+	 */
+	private void runCalendars()
+	{
+		Hotel hotel = createHotel();
+		ArrayList<Room> hotelRooms = hotel.getRooms();
+		ArrayList<Calendar[]> upcomingReservations = new ArrayList<Calendar[]>();
+		ArrayList<Integer> upcomingRooms = new ArrayList<Integer>();
+		int booked = 0;
+		for(int batch=0; batch<BATCHES; batch++)
+		{
+			long allocated = getAllocatedBytes();
+			long start = System.nanoTime();
+			for(int i=batch * bookings / BATCHES; i<(batch + 1) * bookings / BATCHES; i++)
+			{
+				Calendar startDate = BinaryCodec.toCalendar(startDays[i]);
+				Calendar endDate = BinaryCodec.toCalendar(endDays[i]);
+				for(int r=1; r<=hotelRooms.size(); r++)
+				{
+					if(!hotelRooms.get(r-1).toString().equals(ROOM_TYPE))
+						continue;
+
+					boolean available = true;
+					for(int j=0; j<upcomingReservations.size(); j++)
+						if(upcomingRooms.get(j) == r)
+							if(upcomingReservations.get(j)[0].getTime().before(endDate.getTime()))
+								if(startDate.getTime().before(upcomingReservations.get(j)[1].getTime()))
+									available = false;
+					if(available)
+					{
+						getTotalRate(startDate, endDate, hotelRooms.get(r-1).getRate());
+						upcomingReservations.add(new Calendar[] { startDate, endDate });
+						upcomingRooms.add(r);
+						booked++;
+						break;
+					}
+				}
+			}
+			report("calendars", batch, System.nanoTime() - start, getAllocatedBytes() - allocated, booked);
+		}
+	}
+
+	/**
+	 * Computes the total rate of a stay the way the Reservation constructor did before dates were kept as epoch days.
+	 * @param startDate Start date.
+	 * @param endDate End date.
+	 * @param nightlyRate Nightly rate.
+	 * @return Returns the total rate of the stay.
+	 */
+	private static int getTotalRate(Calendar startDate, Calendar endDate, int nightlyRate)
+	{
+		if(startDate.get(Calendar.YEAR) == endDate.get(Calendar.YEAR))
+			return (endDate.get(Calendar.DAY_OF_YEAR) - startDate.get(Calendar.DAY_OF_YEAR)) * nightlyRate;
+
+		int days = 0;
+		Calendar newStartDate = (Calendar) startDate.clone();
+		while(newStartDate.get(Calendar.YEAR) < endDate.get(Calendar.YEAR))
+		{
+			days += newStartDate.getActualMaximum(Calendar.DAY_OF_YEAR);
+			newStartDate.add(Calendar.YEAR, 1);
+		}
+		days += endDate.get(Calendar.DAY_OF_YEAR) - startDate.get(Calendar.DAY_OF_YEAR);
+		return days * nightlyRate;
+	}
+
+	/**
+	 * @return Returns a new hotel with the given number of double rooms.
+	 */
+	private Hotel createHotel()
+	{
+		Hotel hotel = new Hotel("BenchmarkHotel", rooms, new String[] { ROOM_TYPE });
+		for(int i=1; i<=rooms; i++)
+			hotel.addRoom(new DoubleRoom(i, 75));
+		return hotel;
+	}
+
+	/**
+	 * Prints the average time and allocation per booking of a batch.
+	 * @param path Name of the booking path.
+	 * @param batch Number of batch.
+	 * @param nanos Time taken by the batch.
+	 * @param bytes Bytes allocated by the batch, or a negative number if unknown.
+	 * @param booked Number of reservations booked so far.
+	 */
+	private void report(String path, int batch, long nanos, long bytes, int booked)
+	{
+		int batchSize = bookings / BATCHES;
+		System.out.println(path + ", batch " + (batch + 1) + " (" + booked + " booked): " + nanos / batchSize / 1000.0 + " us, "
+				+ (bytes < 0 ? "n/a" : String.valueOf(bytes / batchSize)) + " bytes per booking");
+	}
+
+	/**
+	 * @return Returns the number of bytes allocated by the current thread so far, or -1 if the JVM does not measure it.
+	 */
+	private static long getAllocatedBytes()
+	{
+		try {
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			if(threads instanceof com.sun.management.ThreadMXBean)
+				return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+		} catch (NoClassDefFoundError e) {
+			// Not a JVM that measures allocation per thread.
+		}
+		return -1;
+	}
+
+	/**
+	 * Runs the benchmark, once to warm up and once to measure.
+	 * @param args Number of rooms (100 by default) and number of bookings (5000 by default).
+	 */
+	public static void main(String[] args)
+	{
+		int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int bookings = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+		BookingBenchmark benchmark = new BookingBenchmark(rooms, bookings);
+
+		System.out.println("Warming up.");
+		new BookingBenchmark(rooms, bookings / 10).runEpochDays();
+		new BookingBenchmark(rooms, bookings / 10).runCalendars();
+
+		System.out.println("Booking " + bookings + " stays in " + rooms + " rooms.");
+		benchmark.runCalendars();
+		benchmark.runEpochDays();
+	}
+}
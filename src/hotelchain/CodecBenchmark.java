@@ -0,0 +1,111 @@
+package hotelchain;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Random;
+
+/**
+ * Measures the size and load time of a reservations file written in BinaryCodec format, comparing it with the same
+ * reservations written using Java serialization, as FileHandler did before BinaryCodec was introduced.
+ * Both files are read through FileHandler.readFile, which reads either format, several times in a row.
+ *
+ * Can be run as an application: "java -cp hotelchain.jar hotelchain.CodecBenchmark [reservations]".
+ * The files are written to the temporary directory and deleted afterwards.
+ * @author Joost Janssen
+ */
+public class CodecBenchmark
+{
+	private final static int RUNS = 5;
+	private final static String[] HOTELS = { "SimpleHotel", "MediocreHotel", "FancyHotel" };
+	private final static String[] ROOM_TYPES = { "Single", "Double", "Queensize", "BridalSuite" };
+
+	private final ArrayList<Reservation> reservations;
+
+	/**
+	 * Constructs a benchmark of a given number of random reservations of up to two weeks within three years.
+	 * @param _reservations Number of reservations.
+	 */
+	public CodecBenchmark(int _reservations)
+	{
+		reservations = new ArrayList<Reservation>(_reservations);
+		Random random = new Random(42);
+		int today = BinaryCodec.toEpochDay(Calendar.getInstance());
+		for(int i=0; i<_reservations; i++)
+		{
+			int startDay = today - 365 + random.nextInt(3 * 365);
+			Calendar startDate = BinaryCodec.toCalendar(startDay);
+			Calendar endDate = BinaryCodec.toCalendar(startDay + 1 + random.nextInt(14));
+			reservations.add(new Reservation(random.nextInt(100000), HOTELS[random.nextInt(HOTELS.length)], 1 + random.nextInt(200),
+					ROOM_TYPES[random.nextInt(ROOM_TYPES.length)], startDate, endDate, 50 + random.nextInt(200), i + 1));
+		}
+	}
+
+	/**
+	 * Writes the reservations in both formats and reads each file a number of times, reporting the size of the files
+	 * and the time taken by each read.
+	 * @throws IOException if a file could not be written.
+	 */
+	private void run() throws IOException
+	{
+		File serialized = File.createTempFile("hotelchain.benchmark", ".serialized");
+		File binary = File.createTempFile("hotelchain.benchmark", ".binary");
+		try {
+			ObjectOutputStream objectStream = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(serialized)));
+			objectStream.writeObject(reservations);
+			objectStream.writeInt(reservations.size());
+			objectStream.close();
+
+			long start = System.nanoTime();
+			if(!new FileHandler(binary.getPath()).writeFile(reservations, reservations.size()))
+				throw new IOException("Could not write " + binary.getPath());
+			System.out.println("Wrote " + reservations.size() + " reservations in BinaryCodec format in "
+					+ (System.nanoTime() - start) / 1000000 + " ms.");
+
+			System.out.println("Java serialization: " + serialized.length() + " bytes, BinaryCodec: " + binary.length() + " bytes ("
+					+ String.format("%.1f", (double) serialized.length() / binary.length()) + "x smaller).");
+			read("Java serialization", serialized);
+			read("BinaryCodec", binary);
+		} finally {
+			serialized.delete();
+			binary.delete();
+		}
+	}
+
+	/**
+	 * Reads a given file a number of times using FileHandler and prints the time taken by each read.
+	 * @param format Name of the format of the file.
+	 * @param file File to be read.
+	 */
+	private void read(String format, File file)
+	{
+		for(int run=0; run<RUNS; run++)
+		{
+			long start = System.nanoTime();
+			ArrayList<?> loaded = new FileHandler(file.getPath()).readFile();
+			long nanos = System.nanoTime() - start;
+			System.out.println(format + ", run " + (run + 1) + ": loaded " + (loaded == null ? 0 : loaded.size())
+					+ " reservations in " + nanos / 1000000 + " ms.");
+		}
+	}
+
+	/**
+	 * Runs the benchmark.
+	 * @param args Number of reservations (1000000 by default).
+	 */
+	public static void main(String[] args)
+	{
+		int reservations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		System.out.println("Generating " + reservations + " reservations.");
+		try {
+			new CodecBenchmark(reservations).run();
+		} catch (IOException e) {
+			System.out.println("There was an error writing the benchmark files.");
+			e.printStackTrace();
+		}
+	}
+}
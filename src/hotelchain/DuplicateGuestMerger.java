@@ -0,0 +1,284 @@
+package hotelchain;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Finds guests registered more than once and merges them into the guest registered first.
+ * Comparing every pair of guests is infeasible for many guests, so guests are first grouped into blocks by a key of
+ * their normalized name, city and country, and only guests within the same block are compared. Normalizing lower cases
+ * the text, strips accents and punctuation and collapses whitespace. Two guests of a block are duplicates if their
+ * normalized addresses hold the same numbers, such as house numbers, and differ in at most a fifth of their characters.
+ *
+ * Blocks are scored in parallel on the common fork-join pool. Merging moves the reservations of each duplicate to
+ * the guest registered first and then removes the duplicate, both recorded in the journals. If merging is interrupted,
+ * running it again completes it. Counts and throughput of each run are kept for a report.
+ *
+ * Can be run as a batch job in the folder holding the data files, while the application itself is not running:
+ * "java -cp hotelchain.jar hotelchain.DuplicateGuestMerger [--dry-run]". A dry run only reads the guests and lists
+ * the duplicates found, without writing any file. The background archival job is not started.
+ * @author Joost Janssen
+ */
+public class DuplicateGuestMerger
+{
+	private final static double MAX_ADDRESS_DIFFERENCE = 0.2;	// Fraction of characters in which addresses of duplicates may differ.
+	private final static int BLOCKS_PER_TASK = 256;
+	private final static Pattern ACCENTS = Pattern.compile("\\p{M}");
+	private final static Pattern PUNCTUATION = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private final static Pattern NON_DIGITS = Pattern.compile("\\D+");
+
+	private final GuestRegistration guestRegistration;
+	private final ReservationManager reservationManager;
+
+	private int guests, blocks, merges, reassigned, failures;
+	private long comparisons, findNanos, mergeNanos;
+
+	/**
+	 * Constructs a merger of the duplicate guests of a given guest registration.
+	 * @param _guestRegistration Guest registration.
+	 * @param _reservationManager Reservation manager holding the reservations of the guests, or null to only find duplicates.
+	 */
+	public DuplicateGuestMerger(GuestRegistration _guestRegistration, ReservationManager _reservationManager)
+	{
+		guestRegistration = _guestRegistration;
+		reservationManager = _reservationManager;
+	}
+
+	/**
+	 * Finds the duplicate guests among all registered guests.
+	 * @return Returns pairs of the guest ID of a duplicate and the guest ID of the guest registered first it duplicates.
+	 */
+	protected ArrayList<int[]> findDuplicates()
+	{
+		long start = System.nanoTime();
+		ArrayList<Guest> registered = guestRegistration.getGuests();
+		HashMap<String, ArrayList<Guest>> guestsByKey = new HashMap<String, ArrayList<Guest>>();
+		for(int i=0; i<registered.size(); i++)
+		{
+			Guest guest = registered.get(i);
+			String key = normalize(guest.getName()) + "|" + normalize(guest.getCity()) + "|" + normalize(guest.getCountry());
+			ArrayList<Guest> block = guestsByKey.get(key);
+			if(block == null)
+			{
+				block = new ArrayList<Guest>(2);
+				guestsByKey.put(key, block);
+			}
+			block.add(guest);
+		}
+
+		// Guests are listed in order of guest ID, so the first guest of each block was registered first.
+		ArrayList<ArrayList<Guest>> candidates = new ArrayList<ArrayList<Guest>>();
+		for(ArrayList<Guest> block : guestsByKey.values())
+			if(block.size() > 1)
+				candidates.add(block);
+
+		AtomicLong compared = new AtomicLong();
+		ArrayList<int[]> duplicates = ForkJoinPool.commonPool().invoke(new BlockScoring(candidates, 0, candidates.size(), compared));
+		guests = registered.size();
+		blocks = guestsByKey.size();
+		comparisons = compared.get();
+		findNanos = System.nanoTime() - start;
+		return duplicates;
+	}
+
+	/**
+	 * Merges given duplicate guests: moves their reservations to the guests they duplicate, and then removes them.
+	 * A duplicate whose reservations could not all be moved is not removed.
+	 * @param duplicates Pairs of the guest ID of a duplicate and the guest ID of the guest it duplicates.
+	 * @return Returns the number of duplicates removed.
+	 */
+	protected int merge(ArrayList<int[]> duplicates)
+	{
+		long start = System.nanoTime();
+		merges = 0;
+		reassigned = 0;
+		failures = 0;
+		for(int i=0; i<duplicates.size(); i++)
+		{
+			Guest duplicate = guestRegistration.getGuest(duplicates.get(i)[0]);
+			if(duplicate == null || guestRegistration.getGuest(duplicates.get(i)[1]) == null)
+				continue;
+
+			int moved = reservationManager.reassignReservations(duplicates.get(i)[0], duplicates.get(i)[1]);
+			if(moved >= 0 && guestRegistration.removeGuest(duplicate))
+			{
+				merges++;
+				reassigned += moved;
+			}
+			else
+				failures++;
+		}
+		mergeNanos = System.nanoTime() - start;
+		return merges;
+	}
+
+	/**
+	 * @return Returns a report of the counts and throughput of the last search for duplicates and the last merge.
+	 */
+	protected ArrayList<String> getReport()
+	{
+		ArrayList<String> report = new ArrayList<String>();
+		report.add(guests + " guests in " + blocks + " blocks, " + comparisons + " pairs of addresses compared in " + findNanos / 1000000 + " ms ("
+				+ getRate(guests, findNanos) + " guests/s, " + getRate(comparisons, findNanos) + " comparisons/s).");
+		report.add(merges + " duplicates merged, " + reassigned + " reservations moved in " + mergeNanos / 1000000 + " ms ("
+				+ getRate(merges, mergeNanos) + " merges/s).");
+		if(failures > 0)
+			report.add(failures + " duplicates could not be merged.");
+		return report;
+	}
+
+	/**
+	 * Finds and merges the duplicate guests of the hotel chain whose data files are in the working directory.
+	 * A dry run reads only the guests, with files read-only.
+	 * @param args "--dry-run" to only list the duplicates found.
+	 */
+	public static void main(String[] args)
+	{
+		boolean dryRun = args.length > 0 && args[0].equals("--dry-run");
+		System.setProperty("hotelchain.archiveInterval", "0");
+		HotelChain chain = null;
+		DuplicateGuestMerger merger;
+		if(dryRun)
+		{
+			System.setProperty("hotelchain.readOnly", "true");
+			merger = new DuplicateGuestMerger(new GuestRegistration(), null);
+		}
+		else
+		{
+			chain = new HotelChain("Hotel's Hotels");
+			merger = new DuplicateGuestMerger(chain.getGuestRegistration(), chain.getReservationManager());
+		}
+
+		ArrayList<int[]> duplicates = merger.findDuplicates();
+		if(dryRun)
+			for(int i=0; i<duplicates.size(); i++)
+				System.out.println("Guest " + duplicates.get(i)[0] + " duplicates guest " + duplicates.get(i)[1] + ".");
+		else
+		{
+			merger.merge(duplicates);
+			chain.close();
+		}
+
+		ArrayList<String> report = merger.getReport();
+		for(int i=0; i<report.size(); i++)
+			System.out.println(report.get(i));
+	}
+
+	/**
+	 * @param count Number of items.
+	 * @param nanos Time taken.
+	 * @return Returns the number of items per second.
+	 */
+	private static long getRate(long count, long nanos)
+	{
+		return nanos == 0 ? 0 : count * 1000000000L / nanos;
+	}
+
+	/**
+	 * @param text Name, address, city or country.
+	 * @return Returns the given text in lower case without accents and punctuation, with words separated by single spaces.
+	 */
+	protected static String normalize(String text)
+	{
+		if(text == null)
+			return "";
+		String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		return PUNCTUATION.matcher(ACCENTS.matcher(decomposed).replaceAll("").toLowerCase()).replaceAll(" ").trim();
+	}
+
+	/**
+	 * Checks whether two guests of the same block are duplicates by comparing their normalized addresses.
+	 * @param address1 Normalized address of the first guest.
+	 * @param address2 Normalized address of the second guest.
+	 * @return Returns whether the addresses hold the same digits and differ in at most MAX_ADDRESS_DIFFERENCE of their characters.
+	 */
+	private static boolean isDuplicate(String address1, String address2)
+	{
+		if(!NON_DIGITS.matcher(address1).replaceAll(" ").trim().equals(NON_DIGITS.matcher(address2).replaceAll(" ").trim()))
+			return false;
+		int length = Math.max(address1.length(), address2.length());
+		if(length == 0)
+			return true;
+		if(Math.abs(address1.length() - address2.length()) > length * MAX_ADDRESS_DIFFERENCE)
+			return false;
+		return BKTree.getDistance(address1, address2) <= length * MAX_ADDRESS_DIFFERENCE;
+	}
+
+	/**
+	 * Scores the pairs of guests of a range of blocks by splitting the range in halves until at most BLOCKS_PER_TASK
+	 * blocks remain. Within a block, each guest is compared to the first guest of each group of duplicates found so far,
+	 * and joins the first group it duplicates.
+	 */
+	private static class BlockScoring extends RecursiveTask<ArrayList<int[]>>
+	{
+		private static final long serialVersionUID = 1L;
+		private final ArrayList<ArrayList<Guest>> blocks;
+		private final int from, to;
+		private final AtomicLong comparisons;
+
+		/**
+		 * Constructs the scoring of the blocks from a given index up to another.
+		 * @param _blocks Blocks of guests, each in order of guest ID.
+		 * @param _from Index of the first block to score.
+		 * @param _to Index after the last block to score.
+		 * @param _comparisons Counter of the pairs of addresses compared, shared by all tasks.
+		 */
+		private BlockScoring(ArrayList<ArrayList<Guest>> _blocks, int _from, int _to, AtomicLong _comparisons)
+		{
+			blocks = _blocks;
+			from = _from;
+			to = _to;
+			comparisons = _comparisons;
+		}
+
+		@Override
+		protected ArrayList<int[]> compute()
+		{
+			if(to - from > BLOCKS_PER_TASK)
+			{
+				int middle = (from + to) / 2;
+				BlockScoring left = new BlockScoring(blocks, from, middle, comparisons);
+				left.fork();
+				ArrayList<int[]> right = new BlockScoring(blocks, middle, to, comparisons).compute();
+				ArrayList<int[]> duplicates = left.join();
+				duplicates.addAll(right);
+				return duplicates;
+			}
+
+			ArrayList<int[]> duplicates = new ArrayList<int[]>();
+			long compared = 0;
+			for(int b=from; b<to; b++)
+			{
+				ArrayList<Guest> block = blocks.get(b);
+				ArrayList<Guest> originals = new ArrayList<Guest>();
+				ArrayList<String> addresses = new ArrayList<String>();
+				for(int i=0; i<block.size(); i++)
+				{
+					String address = normalize(block.get(i).getAddress());
+					boolean duplicate = false;
+					for(int j=0; j<originals.size() && !duplicate; j++)
+					{
+						compared++;
+						if(isDuplicate(addresses.get(j), address))
+						{
+							duplicates.add(new int[] { block.get(i).getID(), originals.get(j).getID() });
+							duplicate = true;
+						}
+					}
+					if(!duplicate)
+					{
+						originals.add(block.get(i));
+						addresses.add(address);
+					}
+				}
+			}
+			comparisons.addAndGet(compared);
+			return duplicates;
+		}
+	}
+}
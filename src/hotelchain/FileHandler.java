@@ -1,24 +1,44 @@
 package hotelchain;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Handles reading and writing of a file storing an ArrayList of objects and a counter integer.  
+ * Optionally keeps a Journal of changes next to the file, which is compacted by writing a snapshot 
+ * of the ArrayList to the file in the background every SNAPSHOT_INTERVAL changes.
+ * If the system property "hotelchain.readOnly" is true, files are only read: no file is created or written,
+ * snapshots are skipped and changes are not appended to the journal, e.g. for reports on a copy of the data in use.
  * @author Joost Janssen
  */
 public class FileHandler 
 {
 	private int IDcounter;	
 	private final String filename;
-	private ObjectOutputStream outputStream;
-	private ObjectInputStream inputStream;
+	private DataOutputStream outputStream;
+	private DataInputStream inputStream;
 	private boolean createNewFile;
+	private Journal journal;
+	private Thread snapshotWriter;
+	private final Object writeLock = new Object();
+	private final boolean readOnly = Boolean.getBoolean(read_only_property);
+	
+	private final static int SNAPSHOT_INTERVAL = 1000; // Number of journal entries after which a snapshot is written.
+	private final static String read_only_property = "hotelchain.readOnly";
 	
 	/**
 	 * Constructs a new FileHandler handling file with filename. 
@@ -37,6 +57,7 @@ public class FileHandler
 	
 	/**
 	 * Reads the contents of the file, stores the counter and returns the ArrayList it contains.
+	 * Reads files written by earlier versions using Java serialization as well as files in BinaryCodec format.
 	 * @return Returns the ArrayList contained in the file.
 	 */
 	protected ArrayList<?> readFile()
@@ -44,18 +65,35 @@ public class FileHandler
 		ArrayList<?> accounts= null;
 		boolean failed = false;		
 		try {
-			inputStream = new ObjectInputStream(new FileInputStream(filename));
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
 		}catch (IOException e) {
 			System.out.println("There was an error reading the file: Could not open file " + filename);
 			failed = true;				
-			System.out.println("Attention: new, empty file created: " + filename);
 			IDcounter =0;
-			writeFile(accounts, IDcounter);
+			if(!readOnly)
+			{
+				System.out.println("Attention: new, empty file created: " + filename);
+				writeFile(accounts, IDcounter);
+			}
 		}
 		if(!failed)
 			try {
-				accounts =  (ArrayList<?>) inputStream.readObject();
-				IDcounter =  inputStream.readInt();
+				inputStream.mark(2);
+				boolean serialized = inputStream.readShort() == ObjectStreamConstants.STREAM_MAGIC;
+				inputStream.reset();
+				
+				if(serialized)
+				{
+					ObjectInputStream objectStream = new ObjectInputStream(inputStream);
+					accounts =  (ArrayList<?>) objectStream.readObject();
+					IDcounter =  objectStream.readInt();
+				}
+				else
+				{
+					BinaryCodec codec = new BinaryCodec();
+					accounts = codec.readList(inputStream);
+					IDcounter = codec.getIDcounter();
+				}
 			} catch (IOException e1) {
 				System.out.println("There was an error loading the file " + filename);
 				failed = true;
@@ -77,17 +115,33 @@ public class FileHandler
 	}
 
 	/**
-	 * Writes a given ArrayList and integer to the file.
+	 * Writes a given ArrayList and integer to the file in BinaryCodec format.
+	 * Writes to a temporary file first, which replaces the file once it is complete.
 	 * @param accounts ArrayList to be written to file.
 	 * @param _IDcounter Integer to be written to file.
-	 * @return Returns whether filewrite was successful. 
+	 * @return Returns whether filewrite was successful. Returns false if files are read-only.
 	 */
 	protected boolean writeFile(ArrayList<?> accounts, int _IDcounter)
+	{
+		if(readOnly)
+			return false;
+		synchronized(writeLock) {
+			return writeFileUnsynchronized(accounts, _IDcounter);
+		}
+	}
+	
+	/**
+	 * Writes a given ArrayList and integer to the file. To be called while holding writeLock.
+	 * @param accounts ArrayList to be written to file.
+	 * @param _IDcounter Integer to be written to file.
+	 * @return Returns whether filewrite was successful. 
+	 */
+	private boolean writeFileUnsynchronized(ArrayList<?> accounts, int _IDcounter)
 	{
 		IDcounter = _IDcounter;
 		boolean failed = false;
 		try {
-			 outputStream = new ObjectOutputStream(new FileOutputStream(filename));
+			 outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename + ".tmp")));
 			} catch (IOException e) {
 		
 			System.out.println("There was an error writing the file: Could not open file " + filename);
@@ -96,8 +150,7 @@ public class FileHandler
 		}
 		if(!failed)
 			try {
-				outputStream.writeObject(accounts);
-				outputStream.writeInt(IDcounter);
+				new BinaryCodec().writeList(outputStream, accounts, IDcounter);
 			} catch (IOException e) {		
 				System.out.println("There was an error writing the file " + filename);
 				failed = true;
@@ -113,8 +166,172 @@ public class FileHandler
 				e.printStackTrace();
 			}
 		
+		if(!failed)
+			try {
+				Files.move(new File(filename + ".tmp").toPath(), new File(filename).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				System.out.println("There was an error writing the file: Could not replace file " + filename);
+				failed = true;
+				e.printStackTrace();
+			}
+		
 		return !failed;
 	}
+	
+	/**
+	 * Opens the Journal of changes kept next to the file and reads the changes it contains.
+	 * @return Returns the entries of the journal, in the order in which they were appended.
+	 */
+	protected ArrayList<JournalEntry> openJournal()
+	{
+		journal = new Journal(filename + ".journal");
+		return journal.readEntries();
+	}
+	
+	/**
+	 * Appends a given change to the journal. Writes a snapshot of the given ArrayList in the background once
+	 * SNAPSHOT_INTERVAL changes were appended since the last snapshot. 
+	 * Must be called by the thread changing the ArrayList, after the change was made and while no other thread can change it.
+	 * @param entry Change to be appended.
+	 * @param accounts ArrayList the change was made to.
+	 * @param _IDcounter Current counter.
+	 * @return Returns a future that completes with whether the change was successfully appended, once it is durable 
+	 * according to the durability policy of the journal.
+	 */
+	protected CompletableFuture<Boolean> appendToJournal(JournalEntry entry, ArrayList<?> accounts, int _IDcounter)
+	{
+		if(readOnly)
+			return CompletableFuture.completedFuture(false);
+		CompletableFuture<Boolean> commit = journal.append(entry);
+		
+		if(journal.getNumberOfEntries() >= SNAPSHOT_INTERVAL)
+			writeSnapshot(accounts, _IDcounter);
+		return commit;
+	}
+	
+	/**
+	 * Appends a given change to the journal without writing a snapshot, for callers that do not keep their data 
+	 * in an ArrayList and only create one when isSnapshotDue() returns true.
+	 * @param entry Change to be appended.
+	 * @return Returns a future that completes with whether the change was successfully appended, once it is durable.
+	 */
+	protected CompletableFuture<Boolean> appendToJournal(JournalEntry entry)
+	{
+		if(readOnly)
+			return CompletableFuture.completedFuture(false);
+		return journal.append(entry);
+	}
+	
+	/**
+	 * @return Returns whether SNAPSHOT_INTERVAL changes were appended since the last snapshot and no snapshot is being written.
+	 */
+	protected synchronized boolean isSnapshotDue()
+	{
+		return journal.getNumberOfEntries() >= SNAPSHOT_INTERVAL && (snapshotWriter == null || !snapshotWriter.isAlive());
+	}
+	
+	/**
+	 * Waits until a change appended to the journal is durable.
+	 * @param commit Future returned by appendToJournal.
+	 * @return Returns whether the change was successfully appended.
+	 */
+	protected boolean waitForCommit(Future<Boolean> commit)
+	{
+		try {
+			return commit.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+	
+	/**
+	 * Writes a snapshot of a given ArrayList and integer to the file in a background thread, and deletes the 
+	 * journal entries it covers once it is written. Changes made after this call are appended to a new journal generation.
+	 * Does nothing if a previous snapshot is still being written or if files are read-only.
+	 * Must be called by the thread changing the ArrayList.
+	 * @param accounts ArrayList to be written to file.
+	 * @param _IDcounter Integer to be written to file.
+	 * @return Returns whether a snapshot was started.
+	 */
+	protected synchronized boolean writeSnapshot(ArrayList<?> accounts, final int _IDcounter)
+	{
+		if(readOnly || (snapshotWriter != null && snapshotWriter.isAlive()))
+			return false;
+		
+		final ArrayList<Object> snapshot = new ArrayList<Object>(accounts);
+		final int coveredGeneration = journal.rotate();
+		snapshotWriter = new Thread(new Runnable() {
+			public void run()
+			{
+				if(writeFile(snapshot, _IDcounter))
+				{
+					// Entries of the covered generation may still be queued; written after clearing, they would recreate its file.
+					journal.flush();
+					journal.clear(coveredGeneration);
+				}
+			}
+		}, "Snapshot " + filename);
+		snapshotWriter.start();
+		return true;
+	}
+	
+	/**
+	 * Waits until the snapshot currently being written, if any, is written and all changes queued for the journal
+	 * are written, and closes the journal, e.g. when the application exits. The journal is reopened by the next change.
+	 */
+	protected void closeJournal()
+	{
+		waitForSnapshot();
+		if(journal != null)
+			journal.close();
+	}
+	
+	/**
+	 * Waits until the snapshot currently being written, if any, is written.
+	 */
+	protected void waitForSnapshot()
+	{
+		Thread writer;
+		synchronized(this) {
+			writer = snapshotWriter;
+		}
+		if(writer != null)
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+	}
+		
+	/**
+	 * Deletes the journal and renames the file by appending a given suffix to its name, e.g. once its contents were moved
+	 * to other files. The renamed file, if there is one, is kept as a backup and no longer read.
+	 * @param suffix Suffix to be appended to the name of the file.
+	 * @return Returns whether the file was successfully renamed.
+	 */
+	protected boolean retireFile(String suffix)
+	{
+		waitForSnapshot();
+		if(journal != null)
+		{
+			journal.close();
+			journal.clear(Integer.MAX_VALUE);
+		}
+		
+		if(new File(filename).isFile())
+			try {
+				Files.move(new File(filename).toPath(), new File(filename + suffix).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				System.out.println("There was an error renaming the file " + filename);
+				e.printStackTrace();
+				return false;
+			}
+		createNewFile = true;
+		return true;
+	}
 		
 	/**
 	 * @return Returns whether creating a new file is required, returns false if file exists.
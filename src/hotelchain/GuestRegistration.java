@@ -1,15 +1,32 @@
 package hotelchain;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 /**
  * Manages the administration of guests of a hotel chain.
  * Extends the FileHandler class in order to be able to store guest registration information to a file. 
+ * Registrations and removals are appended to a Journal, the guests file itself is only rewritten by periodic snapshots.
+ * Guests are kept in order of guest ID, so they can be listed a page at a time from any guest ID on,
+ * and indexed by guest ID, so a guest is found by its ID in constant time.
+ * Lower case guest names are indexed by trigram, so guests are found by part of their name without reading all names.
+ * Names, from each of their words on, and cities are also kept in PrefixTries, to suggest completions of what was typed.
+ * The words of names are kept in a BKTree, to find guests whose name is misspelled.
  * @author Joost Janssen
  */
 public class GuestRegistration extends FileHandler
 {
 	private  ArrayList<Guest> guests;
+	private final IntObjectMap<Guest> guestsByID = new IntObjectMap<Guest>();
+	private final TrigramIndex nameIndex = new TrigramIndex();
+	private final PrefixTrie namePrefixes = new PrefixTrie();
+	private final PrefixTrie cityPrefixes = new PrefixTrie();
+	private final BKTree nameWords = new BKTree();
 	private int guestIDcounter;	
 	private final static  String filename = "hotelchain.registeredGuests";
 
@@ -28,10 +45,125 @@ public class GuestRegistration extends FileHandler
 			guests = (ArrayList<Guest>)readFile();
 
 		guestIDcounter = getIDcounter();
+		replayJournal();
+		Collections.sort(guests, new Comparator<Guest>() 
+		{
+			public int compare(Guest g1, Guest g2)
+			{
+				return Integer.compare(g1.getID(), g2.getID());
+			}
+		});
+		for(int i=0; i<guests.size(); i++)
+			index(guests.get(i));
+	}
+	
+	/**
+	 * Adds a given guest to the index by guest ID, the index of names and the prefix tries.
+	 * @param guest Guest.
+	 */
+	private void index(Guest guest)
+	{
+		guestsByID.put(guest.getID(), guest);
+		nameIndex.add(guest.getID(), guest.getName().toLowerCase());
+		
+		ArrayList<String> names = getNameSuffixes(guest.getName());
+		for(int i=0; i<names.size(); i++)
+			namePrefixes.add(names.get(i).toLowerCase(), names.get(i), guest.getID());
+		if(guest.getCity() != null && !guest.getCity().isEmpty())
+			cityPrefixes.add(guest.getCity().toLowerCase(), guest.getCity(), guest.getID());
+		
+		String[] words = getWords(guest.getName());
+		for(int i=0; i<words.length; i++)
+			nameWords.add(words[i], guest.getID());
+	}
+	
+	/**
+	 * Removes a given guest from the index by guest ID, the index of names and the prefix tries.
+	 * @param guest Guest.
+	 */
+	private void unindex(Guest guest)
+	{
+		guestsByID.remove(guest.getID());
+		nameIndex.remove(guest.getID(), guest.getName().toLowerCase());
+		
+		ArrayList<String> names = getNameSuffixes(guest.getName());
+		for(int i=0; i<names.size(); i++)
+			namePrefixes.remove(names.get(i).toLowerCase(), guest.getID());
+		if(guest.getCity() != null && !guest.getCity().isEmpty())
+			cityPrefixes.remove(guest.getCity().toLowerCase(), guest.getID());
+		
+		String[] words = getWords(guest.getName());
+		for(int i=0; i<words.length; i++)
+			nameWords.remove(words[i], guest.getID());
+	}
+	
+	/**
+	 * @param name Guest's name.
+	 * @return Returns the lower case words of the given name.
+	 */
+	private static String[] getWords(String name)
+	{
+		String trimmed = name.trim().toLowerCase();
+		return trimmed.isEmpty() ? new String[0] : trimmed.split(" +");
 	}
 	
 	/**
-	 * Registers a new guest of the hotel chain given their personal information and returns its guest ID number.
+	 * @param name Guest's name.
+	 * @return Returns the parts of the given name from each of its words to its end, so that typing the start of
+	 * any word of a name, such as a surname, suggests the name.
+	 */
+	protected static ArrayList<String> getNameSuffixes(String name)
+	{
+		ArrayList<String> suffixes = new ArrayList<String>();
+		for(int i=0; i<name.length(); i++)
+			if(name.charAt(i) != ' ' && (i == 0 || name.charAt(i-1) == ' '))
+				suffixes.add(name.substring(i));
+		return suffixes;
+	}
+	
+	/**
+	 * Applies the changes recorded in the journal since the guests file was last written.
+	 * Starts writing a snapshot of the resulting guests if any changes were replayed.
+	 */
+	private void replayJournal()
+	{
+		ArrayList<JournalEntry> entries = openJournal();
+		if(entries.isEmpty())
+			return;
+		
+		HashMap<Integer, Guest> guestsByID = new HashMap<Integer, Guest>();
+		for(int i=0; i<guests.size(); i++)
+			guestsByID.put(guests.get(i).getID(), guests.get(i));
+		
+		for(int i=0; i<entries.size(); i++)
+		{
+			JournalEntry entry = entries.get(i);
+			if(entry.getType() == JournalEntry.REGISTER)
+				guestsByID.put(entry.getID(), (Guest) entry.getPayload());
+			else if(entry.getType() == JournalEntry.REMOVE)
+				guestsByID.remove(entry.getID());
+			
+			if(entry.getID() >= guestIDcounter)
+				guestIDcounter = entry.getID() + 1;
+		}
+		
+		ArrayList<Guest> replayed = new ArrayList<Guest>();
+		for(int i=0; i<guests.size(); i++)
+		{
+			Guest guest = guestsByID.remove(guests.get(i).getID());
+			if(guest != null)
+				replayed.add(guest);
+		}
+		for(int i=0; i<entries.size(); i++)
+			if(entries.get(i).getType() == JournalEntry.REGISTER && guestsByID.containsKey(entries.get(i).getID()))
+				replayed.add(guestsByID.remove(entries.get(i).getID()));
+		guests = replayed;
+		
+		writeSnapshot(guests, guestIDcounter);
+	}
+	
+	/**
+	 * Registers a new guest of the hotel chain given their personal information and returns its guest ID number once the registration is durable.
 	 * @param name Guest's name.
 	 * @param address Guest's address.
 	 * @param city Guest's city.
@@ -40,27 +172,58 @@ public class GuestRegistration extends FileHandler
 	 */
 	protected int registerNewGuest(String name, String address, String city, String country)
 	{		
-		Guest newGuest = new Guest(name, address, city, country, guestIDcounter++);
-		guests.add(newGuest);
-		
-		if(writeFile(guests, guestIDcounter))
-			return newGuest.getID();
-		
-		return -1;
+		return registerNewGuestAsync(name, address, city, country).join();
+	}
+	
+	/**
+	 * Registers a new guest of the hotel chain given their personal information without waiting until the registration is durable.
+	 * Registrations made by concurrent callers are written to disk together.
+	 * @param name Guest's name.
+	 * @param address Guest's address.
+	 * @param city Guest's city.
+	 * @param country Guest's country.
+	 * @return Returns a future that completes with the newly registered guest's ID number once the registration is durable,
+	 * or with -1 if the registration could not be written.
+	 */
+	protected CompletableFuture<Integer> registerNewGuestAsync(String name, String address, String city, String country)
+	{
+		final Guest newGuest;
+		CompletableFuture<Boolean> commit;
+		synchronized(this)
+		{
+			newGuest = new Guest(name, address, city, country, guestIDcounter++);
+			guests.add(newGuest);
+			index(newGuest);
+			commit = appendToJournal(new JournalEntry(JournalEntry.REGISTER, newGuest.getID(), newGuest), guests, guestIDcounter);
+		}
+		return commit.thenApply(new Function<Boolean, Integer>() {
+			public Integer apply(Boolean durable)
+			{
+				return durable ? newGuest.getID() : -1;
+			}
+		});
 	}	
 
 	/**
 	 * Removes a given guest's information from the hotel chain's systems.
 	 * @param guest Guest to be removed.
-	 * @return Returns whether the guest was successfully removed.
+	 * @return Returns whether the guest was successfully removed. Returns false if the guest is not registered.
 	 */
 	protected boolean removeGuest(Guest guest)
 	{
 		if(guest!=null)
 		{
-			guests.remove(guest);
-			
-			if(writeFile(guests, guestIDcounter))
+			CompletableFuture<Boolean> commit;
+			synchronized(this)
+			{
+				Guest removed = guestsByID.get(guest.getID());
+				if(removed == null)
+					return false;
+				guests.remove(findFirstAfter(guest.getID() - 1));
+				unindex(removed);
+				commit = appendToJournal(new JournalEntry(JournalEntry.REMOVE, guest.getID(), null), guests, guestIDcounter);
+			}
+			if(waitForCommit(commit))
 				return true;
 		}				
 		return false;		
@@ -68,40 +231,173 @@ public class GuestRegistration extends FileHandler
 	
 	/**
 	 * Finds a guest's ID number based on (part of) their name.
+	 * Only checks the guests whose name contains all trigrams of the given name, unless it is too short to have any.
 	 * @param name Name given to match guest ID number to.
 	 * @return Returns guest ID belong to the given name or null if no match was found.
 	 */
-	protected ArrayList<Guest> findGuestID(String name)
+	protected synchronized ArrayList<Guest> findGuestID(String name)
 	{
 		ArrayList<Guest> hits = new ArrayList<Guest>();
-		if(name!=null)
+		if(name==null)
+			return hits;
+		
+		String query = name.toLowerCase();
+		int[] candidates = nameIndex.find(query);
+		if(candidates == null)
+		{
 			for(int i=0;i<guests.size();i++)
-				if(guests.get(i).getName().toLowerCase().contains(name.toLowerCase()))
+				if(guests.get(i).getName().toLowerCase().contains(query))
 					hits.add(guests.get(i));
+		}
+		else
+			for(int i=0; i<candidates.length; i++)
+			{
+				Guest guest = guestsByID.get(candidates[i]);
+				if(guest != null && guest.getName().toLowerCase().contains(query))
+					hits.add(guest);
+			}
 				
 		return hits;		
 	}	
 	
 	/**
-	 * Finds a guest based on their guest ID number.
+	 * Finds guests whose name resembles a given name, for when it may be misspelled. Each word of the given name must be
+	 * within a few edits of a word of the guest's name: one edit for words of up to four characters, two for longer words.
+	 * @param name Name, ignoring case.
+	 * @return Returns the guests with a similar name, in order of guest ID.
+	 */
+	protected synchronized ArrayList<Guest> findSimilarGuests(String name)
+	{
+		ArrayList<Guest> hits = new ArrayList<Guest>();
+		String[] words = name == null ? new String[0] : getWords(name);
+		if(words.length == 0)
+			return hits;
+		
+		int[] guestIDs = nameWords.find(words[0], words[0].length() <= 4 ? 1 : 2);
+		for(int w=1; w<words.length && guestIDs.length > 0; w++)
+		{
+			int[] wordIDs = nameWords.find(words[w], words[w].length() <= 4 ? 1 : 2);
+			int retained = 0;
+			for(int i=0, j=0; i<guestIDs.length && j<wordIDs.length; )
+				if(guestIDs[i] < wordIDs[j])
+					i++;
+				else if(guestIDs[i] > wordIDs[j])
+					j++;
+				else
+				{
+					guestIDs[retained++] = guestIDs[i++];
+					j++;
+				}
+			guestIDs = Arrays.copyOf(guestIDs, retained);
+		}
+		
+		for(int i=0; i<guestIDs.length; i++)
+			hits.add(guestsByID.get(guestIDs[i]));
+		return hits;
+	}
+	
+	/**
+	 * Finds the registered guests living in a given city.
+	 * @param city City, ignoring case.
+	 * @return Returns the guests living in the given city, in order of guest ID.
+	 */
+	protected synchronized ArrayList<Guest> findGuestsInCity(String city)
+	{
+		ArrayList<Guest> hits = new ArrayList<Guest>();
+		if(city == null)
+			return hits;
+		int[] guestIDs = cityPrefixes.get(city.toLowerCase());
+		for(int i=0; i<guestIDs.length; i++)
+			hits.add(guestsByID.get(guestIDs[i]));
+		return hits;
+	}
+	
+	/**
+	 * Suggests completions of a given start of a guest's name. Names are also completed from the start of any of their
+	 * later words, for example a surname, in which case the suggestion is the name from that word on.
+	 * @param prefix Start of a name, ignoring case.
+	 * @param k Maximum number of suggestions.
+	 * @return Returns at most k completions, shared by the most guests first.
+	 */
+	protected synchronized ArrayList<String> suggestNames(String prefix, int k)
+	{
+		return namePrefixes.complete(prefix.toLowerCase(), k);
+	}
+	
+	/**
+	 * Suggests completions of a given start of the name of a city.
+	 * @param prefix Start of a city, ignoring case.
+	 * @param k Maximum number of suggestions.
+	 * @return Returns at most k cities, those where the most guests live first.
+	 */
+	protected synchronized ArrayList<String> suggestCities(String prefix, int k)
+	{
+		return cityPrefixes.complete(prefix.toLowerCase(), k);
+	}
+	
+	/**
+	 * Lists the registered guests whose name contains a given text a page at a time, in order of guest ID.
+	 * Finds the first guest after the cursor by binary search.
+	 * @param name Text the name of each listed guest contains, ignoring case, or null to list all guests.
+	 * @param cursor Page.FIRST, or the cursor returned with the previous page.
+	 * @param pageSize Maximum number of guests on the page.
+	 * @return Returns the Page of guests after the given cursor.
+	 */
+	protected synchronized Page<Guest> getGuestPage(String name, int cursor, int pageSize)
+	{
+		int low = findFirstAfter(cursor);
+		ArrayList<Guest> page = new ArrayList<Guest>(pageSize);
+		int i;
+		for(i=low; i<guests.size() && page.size() < pageSize; i++)
+			if(name == null || guests.get(i).getName().toLowerCase().contains(name.toLowerCase()))
+				page.add(guests.get(i));
+		
+		return new Page<Guest>(page, i > low ? guests.get(i-1).getID() : cursor, i < guests.size());
+	}
+	
+	/**
+	 * Finds the position of the first guest with a guest ID above a given guest ID by binary search.
+	 * @param guestID Guest ID.
+	 * @return Returns the position of that guest in the list of guests, or the number of guests if there is none.
+	 */
+	private int findFirstAfter(int guestID)
+	{
+		int low = 0;
+		int high = guests.size();
+		while(low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if(guests.get(middle).getID() <= guestID)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+	
+	/**
+	 * Finds a guest based on their guest ID number, using the index of guests by guest ID.
 	 * Note: assumes there can be no duplicate IDs
 	 * @param guestID Guest ID number 
 	 * @return Returns the guest whose ID number was given or null if no match was found. 	
 	 */
-	protected Guest getGuest(int guestID)
+	protected synchronized Guest getGuest(int guestID)
 	{
-		if(guestID>=0)
-			for(int i=0; i<guests.size();i++)
-				if(guests.get(i).getID() == guestID)
-					return guests.get(i);
-			
-		return null;
+		return guestsByID.get(guestID);
 	}	
 		
+	/**
+	 * @return Returns a copy of the list of registered guests, in order of guest ID.
+	 */
+	protected synchronized ArrayList<Guest> getGuests()
+	{
+		return new ArrayList<Guest>(guests);
+	}
+		
 	/**
 	 * @return Returns the number of guests currently registered at this hotel chain.
 	 */
-	protected int getNumberOfRegisteredGuests()
+	protected synchronized int getNumberOfRegisteredGuests()
 	{
 		return guests.size();
 	}	
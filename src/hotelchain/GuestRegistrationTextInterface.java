@@ -10,6 +10,7 @@ import java.util.ArrayList;
 public class GuestRegistrationTextInterface extends TextInterface
 {	
 	protected final GuestRegistration guestRegistration;
+	protected final static int SUGGESTIONS = 5;	// Number of completions suggested for a name or city.
 
 	/**
 	 * Constructs an instance of a textual guest registration interface, extending the basic TextInterface.
@@ -58,7 +59,7 @@ public class GuestRegistrationTextInterface extends TextInterface
 	}
 	
 	/**
-	 * Displays the Guests Information screen of this interface.
+	 * Displays the Guests Information screen of this interface, PAGE_SIZE guests at a time.
 	 */
 	protected void displayGuestsInformation()
 	{
@@ -68,16 +69,19 @@ public class GuestRegistrationTextInterface extends TextInterface
 		else
 			print("  | Total# of guests: " +  guestRegistration.getNumberOfRegisteredGuests());
 	
-		for(int i=0; i<guestRegistration.getGuestIDcounter(); i++)
+		Page<Guest> page = guestRegistration.getGuestPage(null, Page.FIRST, PAGE_SIZE);
+		while(true)
 		{
-			Guest g = guestRegistration.getGuest(i);
-			if(g!=null)
+			for(int i=0; i<page.getItems().size(); i++)
 			{
 				printSingleLine();
-				printGuest(g, true);
-			}				
+				printGuest(page.getItems().get(i), true);
+			}
+			printDoubleLine();
+			if(!page.hasMore() || !promptNextPage())
+				return;
+			page = guestRegistration.getGuestPage(null, page.getNextCursor(), PAGE_SIZE);
 		}
-		printDoubleLine();
 	}
 	
 	/**
@@ -88,6 +92,7 @@ public class GuestRegistrationTextInterface extends TextInterface
 		if(guestRegistration.getNumberOfRegisteredGuests() > 0)
 		{	
 			String[] options = { "Name", 			
+								"City",
 							  	"Guest ID",
 								"Cancel"};	
 			
@@ -103,8 +108,7 @@ public class GuestRegistrationTextInterface extends TextInterface
 			switch(choice)
 			{
 				case 1: 	
-					System.out.println("> Enter name: ");
-					String nameEntered = getUserInput();
+					String nameEntered = promptNameOrCity(false);
 					if(!nameEntered.isEmpty())
 						guestID = showFindGuestID(nameEntered, false);
 					else
@@ -116,8 +120,20 @@ public class GuestRegistrationTextInterface extends TextInterface
 						cancel = true;
 					break;
 				case 2:
+					String cityEntered = promptNameOrCity(true);
+					if(!cityEntered.isEmpty())
+						guestID = showChooseGuest(guestRegistration.findGuestsInCity(cityEntered), false);
+					else
+					{
+						showFindGuests();
+						cancel = true;
+					}
+					if(guestID == -99)
+						cancel = true;
+					break;
+				case 3:
 					System.out.println("> Enter guest ID: ");
-					guestID = getUserChoice(0, guestRegistration.getIDcounter());
+					guestID = getUserChoice(0, guestRegistration.getGuestIDcounter());
 					if(guestID == -1)
 					{
 						showFindGuests();
@@ -147,6 +163,7 @@ public class GuestRegistrationTextInterface extends TextInterface
 	
 	/**
 	 * Finds a guest ID based on a given name. If multiple matches, asks for guest selection.
+	 * If no name contains the given name, looks for guests with a similar name instead, in case it was misspelled.
 	 * @param nameEntered Name of guest to be found
 	 * @param forceChoice indicates whether user is forced to make a choice if search returns multiple results.
 	 * @return Returns a guest ID as indicated by user input. Returns -1 if no guest was found, -99 if multiple guests were found and displayed but no choice was made.
@@ -154,7 +171,23 @@ public class GuestRegistrationTextInterface extends TextInterface
 	protected int showFindGuestID(String nameEntered, boolean forceChoice)
 	{
 		ArrayList<Guest> guestsFound = guestRegistration.findGuestID(nameEntered);
-		
+		if(guestsFound.isEmpty())
+		{
+			guestsFound = guestRegistration.findSimilarGuests(nameEntered);
+			if(!guestsFound.isEmpty())
+				System.out.println("! No guest named \"" + nameEntered + "\" found. Showing guests with a similar name.");
+		}
+		return showChooseGuest(guestsFound, forceChoice);
+	}
+	
+	/**
+	 * Lets the user choose one of the given guests. If multiple guests are given, displays them and asks for guest selection.
+	 * @param guestsFound Guests to choose from.
+	 * @param forceChoice indicates whether user is forced to make a choice if multiple guests are given.
+	 * @return Returns a guest ID as indicated by user input. Returns -1 if no guest was given, -99 if multiple guests were given and displayed but no choice was made.
+	 */
+	protected int showChooseGuest(ArrayList<Guest> guestsFound, boolean forceChoice)
+	{
 		int guestID = -1;		
 		if(guestsFound.size() == 1)
 			guestID = guestsFound.get(0).getID();		
@@ -180,6 +213,36 @@ public class GuestRegistrationTextInterface extends TextInterface
 		return guestID;
 	}
 	
+	/**
+	 * Asks for a guest's name or city. If the text entered ends with a question mark, suggests the most common names
+	 * or cities starting with the text before it, and asks again.
+	 * @param city Indicates whether to ask for a city rather than a name.
+	 * @return Returns the name or city entered.
+	 */
+	protected String promptNameOrCity(boolean city)
+	{
+		while(true)
+		{
+			System.out.println(city ? "> Enter city (end with ? for suggestions): " : "> Enter name (end with ? for suggestions): ");
+			String entered = getUserInput();
+			if(!entered.endsWith("?"))
+				return entered;
+			
+			String prefix = entered.substring(0, entered.length() - 1);
+			ArrayList<String> suggestions = city ? guestRegistration.suggestCities(prefix, SUGGESTIONS) 
+					: guestRegistration.suggestNames(prefix, SUGGESTIONS);
+			if(suggestions.isEmpty())
+				System.out.println("! No suggestions found.");
+			else
+			{
+				printHeader("Suggestions");
+				for(int i=0; i<suggestions.size(); i++)
+					print(suggestions.get(i));
+				printDoubleLine();
+			}
+		}
+	}
+	
 	/**
 	 * Displays the Add New Guest screen of this interface.
 	 * @param showHeader Indicates whether the header of this screen should be printed.
@@ -230,7 +293,7 @@ public class GuestRegistrationTextInterface extends TextInterface
 			displayGuestsInformation();
 			
 			System.out.println("> Please enter ID of guest to be removed: ");
-			int guestID = getUserChoice(0, guestRegistration.getIDcounter());
+			int guestID = getUserChoice(0, guestRegistration.getGuestIDcounter());
 			Guest guest = guestRegistration.getGuest(guestID);
 			
 			if(guest != null)
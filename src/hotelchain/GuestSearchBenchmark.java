@@ -0,0 +1,245 @@
+package hotelchain;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Measures searching guests by part of their name, comparing the TrigramIndex used by the guest registration with
+ * reading all names, as the guest registration did before. Both answer the same queries over the same generated names.
+ * Also reports the memory taken by the index, both as estimated by the index and as measured on the heap,
+ * the time taken to suggest completions of the start of a name with a PrefixTrie, and the time taken to find
+ * misspelled names with a BKTree compared to computing the edit distance to every word.
+ *
+ * Can be run as an application: "java -cp hotelchain.jar hotelchain.GuestSearchBenchmark [guests] [queries]".
+ * The heap is measured after requesting a garbage collection, so it is only indicative.
+ * @author Joost Janssen
+ */
+public class GuestSearchBenchmark
+{
+	private final static String[] SYLLABLES = { "jan", "sen", "de", "vries", "bak", "ker", "mul", "der", "vis", "ser",
+			"ber", "gen", "hof", "man", "van", "dijk", "smit", "meij", "er", "bos", "ma", "kamp", "hui", "zen" };
+
+	private final String[] names;
+	private final String[] queries;
+
+	/**
+	 * Constructs a benchmark searching a given number of generated guest names with a given number of queries.
+	 * Each query is part of a random name, from three to seven characters long.
+	 * @param guests Number of guest names.
+	 * @param _queries Number of queries.
+	 */
+	public GuestSearchBenchmark(int guests, int _queries)
+	{
+		Random random = new Random(42);
+		names = new String[guests];
+		for(int i=0; i<guests; i++)
+			names[i] = createWord(random) + " " + createWord(random);
+
+		queries = new String[_queries];
+		for(int i=0; i<_queries; i++)
+		{
+			String name = names[random.nextInt(guests)];
+			int length = Math.min(name.length(), 3 + random.nextInt(5));
+			int start = random.nextInt(name.length() - length + 1);
+			queries[i] = name.substring(start, start + length);
+		}
+	}
+
+	/**
+	 * @param random Random number generator.
+	 * @return Returns a capitalized word of two to four syllables.
+	 */
+	private static String createWord(Random random)
+	{
+		StringBuilder word = new StringBuilder();
+		int syllables = 2 + random.nextInt(3);
+		for(int i=0; i<syllables; i++)
+			word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+		return word.toString();
+	}
+
+	/**
+	 * Answers all queries by lower casing and reading every name, as findGuestID did before names were indexed.
+	 * @return Returns the total number of names found.
+	 */
+	private long runScan()
+	{
+		long hits = 0;
+		long start = System.nanoTime();
+		for(int q=0; q<queries.length; q++)
+			for(int i=0; i<names.length; i++)
+				if(names[i].toLowerCase().contains(queries[q].toLowerCase()))
+					hits++;
+		report("scan", System.nanoTime() - start, hits);
+		return hits;
+	}
+
+	/**
+	 * Answers all queries with a TrigramIndex, checking each candidate found as findGuestID does.
+	 * @param index Index of the lower case names.
+	 * @return Returns the total number of names found.
+	 */
+	private long runIndex(TrigramIndex index)
+	{
+		long hits = 0;
+		long candidates = 0;
+		long start = System.nanoTime();
+		for(int q=0; q<queries.length; q++)
+		{
+			String query = queries[q].toLowerCase();
+			int[] IDs = index.find(query);
+			candidates += IDs.length;
+			for(int i=0; i<IDs.length; i++)
+				if(names[IDs[i]].toLowerCase().contains(query))
+					hits++;
+		}
+		report("trigram index", System.nanoTime() - start, hits);
+		System.out.println("  " + candidates / queries.length + " candidates checked per query on average.");
+		return hits;
+	}
+
+	/**
+	 * Suggests completions of the first one to four characters of each query with a PrefixTrie holding every name
+	 * from each of its words on, as the guest registration does.
+	 */
+	private void runAutocomplete()
+	{
+		long start = System.nanoTime();
+		PrefixTrie trie = new PrefixTrie();
+		for(int i=0; i<names.length; i++)
+		{
+			ArrayList<String> suffixes = GuestRegistration.getNameSuffixes(names[i]);
+			for(int j=0; j<suffixes.size(); j++)
+				trie.add(suffixes.get(j).toLowerCase(), suffixes.get(j), i);
+		}
+		System.out.println("Built prefix trie of " + names.length + " names in " + (System.nanoTime() - start) / 1000000 + " ms.");
+
+		long suggestions = 0;
+		start = System.nanoTime();
+		for(int q=0; q<queries.length; q++)
+		{
+			String prefix = queries[q].substring(0, Math.min(queries[q].length(), 1 + q % 4)).toLowerCase();
+			suggestions += trie.complete(prefix, GuestRegistrationTextInterface.SUGGESTIONS).size();
+		}
+		report("prefix trie", System.nanoTime() - start, suggestions);
+	}
+
+	/**
+	 * Finds the names with a word within two edits of a misspelled word, once with a BKTree of all words of the names
+	 * and once by computing the edit distance to every distinct word. Each query is misspelled by replacing one
+	 * character and dropping another.
+	 */
+	private void runFuzzy()
+	{
+		BKTree tree = new BKTree();
+		ArrayList<String> words = new ArrayList<String>();
+		HashSet<String> distinct = new HashSet<String>();
+		for(int i=0; i<names.length; i++)
+		{
+			String[] nameWords = names[i].toLowerCase().split(" ");
+			for(int j=0; j<nameWords.length; j++)
+			{
+				tree.add(nameWords[j], i);
+				if(distinct.add(nameWords[j]))
+					words.add(nameWords[j]);
+			}
+		}
+
+		Random random = new Random(42);
+		String[] misspelled = new String[queries.length];
+		for(int q=0; q<queries.length; q++)
+		{
+			StringBuilder word = new StringBuilder(names[random.nextInt(names.length)].toLowerCase().split(" ")[0]);
+			word.setCharAt(random.nextInt(word.length()), 'x');
+			word.deleteCharAt(random.nextInt(word.length()));
+			misspelled[q] = word.toString();
+		}
+
+		long hits = 0;
+		long start = System.nanoTime();
+		for(int q=0; q<queries.length; q++)
+			hits += tree.find(misspelled[q], 2).length;
+		report("bk-tree", System.nanoTime() - start, hits);
+
+		long matches = 0;
+		start = System.nanoTime();
+		for(int q=0; q<queries.length; q++)
+			for(int i=0; i<words.size(); i++)
+				if(BKTree.getDistance(misspelled[q], words.get(i)) <= 2)
+					matches++;
+		System.out.println("edit distance to all " + words.size() + " words: " + (System.nanoTime() - start) / queries.length / 1000.0
+				+ " us per query, " + matches + " words found.");
+	}
+
+	/**
+	 * Builds a TrigramIndex of all names and prints its memory.
+	 * @return Returns the index.
+	 */
+	private TrigramIndex buildIndex()
+	{
+		long heap = getUsedHeap();
+		long start = System.nanoTime();
+		TrigramIndex index = new TrigramIndex();
+		for(int i=0; i<names.length; i++)
+			index.add(i, names[i].toLowerCase());
+		long nanos = System.nanoTime() - start;
+		long measured = getUsedHeap() - heap;
+
+		long nameBytes = 0;
+		for(int i=0; i<names.length; i++)
+			nameBytes += names[i].length();
+		System.out.println("Indexed " + names.length + " names (" + nameBytes + " characters) in " + nanos / 1000000 + " ms: "
+				+ index.getNumberOfTrigrams() + " trigrams, " + index.getMemoryEstimate() / 1024 + " KB estimated, "
+				+ measured / 1024 + " KB measured, " + index.getMemoryEstimate() / names.length + " bytes per name.");
+		return index;
+	}
+
+	/**
+	 * Prints the average time per query.
+	 * @param method Name of the search method.
+	 * @param nanos Time taken by all queries.
+	 * @param hits Total number of names found.
+	 */
+	private void report(String method, long nanos, long hits)
+	{
+		System.out.println(method + ": " + nanos / queries.length / 1000.0 + " us per query, " + hits + " names found.");
+	}
+
+	/**
+	 * @return Returns the number of bytes used on the heap after requesting a garbage collection.
+	 */
+	private static long getUsedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for(int i=0; i<3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Runs the benchmark, once to warm up and once to measure.
+	 * @param args Number of guests (100000 by default) and number of queries (200 by default).
+	 */
+	public static void main(String[] args)
+	{
+		int guests = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+		System.out.println("Warming up.");
+		GuestSearchBenchmark warmup = new GuestSearchBenchmark(guests / 10, queries);
+		warmup.runIndex(warmup.buildIndex());
+		warmup.runScan();
+		warmup.runAutocomplete();
+		warmup.runFuzzy();
+
+		System.out.println("Searching " + guests + " names with " + queries + " queries.");
+		GuestSearchBenchmark benchmark = new GuestSearchBenchmark(guests, queries);
+		TrigramIndex index = benchmark.buildIndex();
+		if(benchmark.runScan() != benchmark.runIndex(index))
+			System.out.println("The index found other names than the scan.");
+		benchmark.runAutocomplete();
+		benchmark.runFuzzy();
+	}
+}
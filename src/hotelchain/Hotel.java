@@ -1,11 +1,17 @@
 package hotelchain;
 import java.io.Serializable;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
 
 /**
  * Representation of a hotel. Contains hotel information such as its name and rooms.
  * Implements Serializable so instances can be stored using the FileHandler class.
+ * The rooms of each type are listed in a RoomTypeInventory, which also counts the rooms of the type booked each night, 
+ * and the availability of each room is kept in a RoomOccupancy bitmap. Neither is stored; they are rebuilt from the rooms and upcoming reservations when first needed.
+ * As they are built and moved forward on first use, every method reading or changing them holds the lock of this hotel.
+ * A stay occupies the nights from its start date up to, but not including, its end date; stays without nights are not booked.
  * @author Joost Janssen
  */
 public class Hotel implements Serializable 
@@ -16,6 +22,11 @@ public class Hotel implements Serializable
 	private final String[] roomTypes;
 	private final ArrayList<Room> hotelRooms;
 	private ArrayList<Reservation> upcomingReservations;
+	private transient HashMap<String, RoomTypeInventory> inventory;
+	private transient HashMap<Integer, RoomOccupancy> occupancy;
+	private transient int occupancyDay;
+	
+	private final static int PAST_DAYS = 64;	// Number of days before today covered by the occupancy bitmaps.
 
 	/**
 	 * Constructs an instance of a Hotel. 
@@ -36,9 +47,11 @@ public class Hotel implements Serializable
 	 * Adds a given room to the list of rooms in this Hotel.
 	 * @param room Room to add.
 	 */
-	protected void addRoom(Room room)
+	protected synchronized void addRoom(Room room)
 	{
 		hotelRooms.add(room);
+		if(inventory != null)
+			addToInventory(room);
 	}
 	
 	/**
@@ -52,10 +65,26 @@ public class Hotel implements Serializable
 	 */
 	protected Reservation reserveRoom(Guest guest, Calendar startDate, Calendar endDate, String roomType, int reservationID)
 	{
-		int	roomNr = getFreeRoom(startDate, endDate, roomType);
-		if(roomNr!= -1 )
+		return reserveRoom(guest, BinaryCodec.toEpochDay(startDate), BinaryCodec.toEpochDay(endDate), roomType, reservationID);
+	}
+	
+	/**
+	 * Reserves a room in this hotel. 
+	 * @param guest Guest to book reservation.
+	 * @param startDay Epoch day of arrival of guest.
+	 * @param endDay Epoch day of departure of guest.
+	 * @param roomType Type of room.
+	 * @param reservationID Reservation ID number.
+	 * @return Returns the resulting Reservation. Returns null if no free room could be found or the stay has no nights.
+	 */
+	protected synchronized Reservation reserveRoom(Guest guest, int startDay, int endDay, String roomType, int reservationID)
+	{
+		if(endDay <= startDay)
+			return null;
+		Room room = getFreeRoom(startDay, endDay, roomType);
+		if(room != null)
 		{
-			Reservation reservation = new Reservation(guest.getID(), this.getName(), roomNr, roomType, startDate, endDate, hotelRooms.get(roomNr-1).getRate(), reservationID);			
+			Reservation reservation = new Reservation(guest.getID(), this.getName(), room.getRoomNumber(), roomType, startDay, endDay, room.getRate(), reservationID);			
 			addReservation(reservation);
 			
 			return reservation;
@@ -67,57 +96,338 @@ public class Hotel implements Serializable
 	 * Adds a reservation to the list of upcoming reservations of this Hotel. 
 	 * @param reservation Reservation to be added.
 	 */
-	protected void addReservation(Reservation reservation)
+	protected synchronized void addReservation(Reservation reservation)
 	{
 		if(reservation != null)
+		{
+			RoomOccupancy roomOccupancy = getOccupancy(reservation.getRoomNumber());
 			upcomingReservations.add(reservation);
+			roomOccupancy.add(reservation);
+			updateLedger(reservation, 1);
+		}
+	}
+	
+	/**
+	 * Adds a list of reservations to the list of upcoming reservations of this Hotel, e.g. when loading existing reservations.
+	 * @param reservations Reservations to be added.
+	 */
+	protected synchronized void addReservations(ArrayList<Reservation> reservations)
+	{
+		for(int i=0; i<reservations.size(); i++)
+			addReservation(reservations.get(i));
 	}
 	
 	/**
-	 * Cancels a given Reservation at this hotel.
+	 * Cancels a given Reservation at this hotel. The reservation may be a copy of the one passed to this hotel, 
+	 * e.g. when it was read from ReservationColumns; it is found by its reservation ID.
 	 * @param reservation Reservation to be cancelled.
+	 * @return Returns whether the reservation was among the upcoming reservations of this hotel.
 	 */
-	protected void cancelReservation(Reservation reservation)
+	protected synchronized boolean cancelReservation(Reservation reservation)
 	{
-		upcomingReservations.remove(reservation);			
+		RoomOccupancy roomOccupancy = getOccupancy(reservation.getRoomNumber());
+		Reservation booked = roomOccupancy.get(reservation.getStartDay(), reservation.getID());
+		if(booked == null || !upcomingReservations.remove(booked))
+			return false;
+		roomOccupancy.remove(booked);
+		updateLedger(booked, -1);
+		return true;
 	}
 	
 	/**
 	 * Finds an unreserved room of a specific type in this hotel during a given time frame. 
-	 * @param startDate Start date of time frame.
-	 * @param endDate End date of time frame.
+	 * @param startDay Epoch day of start of time frame.
+	 * @param endDay Epoch day of end of time frame.
 	 * @param roomType Type of room.
-	 * @return Returns an available Room during the given time frame, or -1 when none is available.
+	 * @return Returns an available Room during the given time frame, or null when none is available.
 	 */
-	private int getFreeRoom(Calendar startDate, Calendar endDate, String roomType)
+	private Room getFreeRoom(int startDay, int endDay, String roomType)
 	{
-		for(int i=1; i<=hotelRooms.size(); i++)
-			if(hotelRooms.get(i-1).toString().equals(roomType)) 
-				if(isRoomAvailableBetween(i, startDate, endDate))
-					return hotelRooms.get(i-1).getRoomNumber();
+		RoomTypeInventory typeInventory = getRoomTypeInventory(roomType);
+		if(typeInventory == null)
+			return null;
 		
-		return -1;
+		ArrayList<Room> rooms = typeInventory.getRooms();
+		for(int i=0; i<rooms.size(); i++)
+			if(isRoomAvailableBetween(rooms.get(i).getRoomNumber(), startDay, endDay))
+				return rooms.get(i);
+		
+		return null;
 	}
 	
 	/**
-	 * Checks whether the Room with a given roomnumber is available at a given time interval.
+	 * Checks whether the Room with a given roomnumber is available during the nights of a given interval.
 	 * @param roomNr Room number.
-	 * @param startDate Start date of interval.
-	 * @param endDate End date of interval.
+	 * @param startDay Epoch day of start of interval.
+	 * @param endDay Epoch day of end of interval.
 	 * @return Returns whether the Room with given room number is available at the given interval.
 	 */
-	private boolean isRoomAvailableBetween(int roomNr, Calendar startDate, Calendar endDate)
+	private boolean isRoomAvailableBetween(int roomNr, int startDay, int endDay)
 	{
-		boolean available = true;
-		
-		for(int i=0;i<upcomingReservations.size();i++)
-			if(upcomingReservations.get(i).getRoomNumber() == roomNr) 
-				if(upcomingReservations.get(i).getStartDate().getTime().before(endDate.getTime()))
-					if(startDate.getTime().before(upcomingReservations.get(i).getEndDate().getTime()))
-						if(!upcomingReservations.get(i).isCancelled())
-							available = false;						
-		return available;
+		return getOccupancy(roomNr).isFreeBetween(startDay, endDay);
+	}	
+	
+	/**
+	 * Finds the reservations of a given room occupying any of the nights of a given time frame, e.g. to move or extend them.
+	 * @param roomNr Room number.
+	 * @param startDate Start date of time frame.
+	 * @param endDate End date of time frame.
+	 * @return Returns the overlapping Reservations, sorted by start date.
+	 */
+	protected synchronized ArrayList<Reservation> getReservationsBetween(int roomNr, Calendar startDate, Calendar endDate)
+	{
+		return getOccupancy(roomNr).getReservationsBetween(BinaryCodec.toEpochDay(startDate), BinaryCodec.toEpochDay(endDate));
+	}
+	
+	/**
+	 * Finds the reservations of a given room occupying the night of a given date.
+	 * @param roomNr Room number.
+	 * @param date Date.
+	 * @return Returns the Reservations occupying the given room that night.
+	 */
+	protected synchronized ArrayList<Reservation> getReservationsOn(int roomNr, Calendar date)
+	{
+		return getOccupancy(roomNr).getReservationsOn(BinaryCodec.toEpochDay(date));
+	}
+	
+	/**
+	 * Finds the first date from a given date on at which a given room is free for a given number of nights.
+	 * @param roomNr Room number.
+	 * @param fromDate Earliest arrival date.
+	 * @param nights Number of nights.
+	 * @return Returns the first possible arrival date.
+	 */
+	protected synchronized Calendar getNextFreeDate(int roomNr, Calendar fromDate, int nights)
+	{
+		return BinaryCodec.toCalendar(getOccupancy(roomNr).getNextFreeDay(BinaryCodec.toEpochDay(fromDate), nights));
+	}
+	
+	/**
+	 * Finds the cheapest way to stay in a room of each type meeting the given constraints during a given time frame.
+	 * Offers a single room if one is free all nights. Otherwise offers a stay in several rooms of the type with as few
+	 * room moves as possible, by each time taking the room that stays free longest. Types that are sold out on any night
+	 * according to their ledger are skipped without looking at their rooms.
+	 * @param startDay Epoch day of arrival.
+	 * @param endDay Epoch day of departure.
+	 * @param minBeds Minimum number of beds.
+	 * @param maxRate Maximum nightly rate, or -1 for any rate.
+	 * @return Returns an Offer for each type of room available during the given time frame. Returns no offers if the time frame has no nights.
+	 */
+	protected synchronized ArrayList<Offer> findOffers(int startDay, int endDay, int minBeds, int maxRate)
+	{
+		ArrayList<Offer> offers = new ArrayList<Offer>();
+		if(endDay <= startDay)
+			return offers;
+		updateOccupancy();
+		for(RoomTypeInventory typeInventory : getInventory().values())
+		{
+			if(typeInventory.getNumberOfBeds() < minBeds || (maxRate != -1 && typeInventory.getRate() > maxRate))
+				continue;
+			
+			boolean soldOut = false;
+			for(int day=startDay; day<endDay && !soldOut; day++)
+				if(typeInventory.isInLedger(day) && typeInventory.getAvailableRooms(day) == 0)
+					soldOut = true;
+			if(soldOut)
+				continue;
+			
+			ArrayList<Integer> roomNumbers = new ArrayList<Integer>();
+			ArrayList<Integer> legStartDays = new ArrayList<Integer>();
+			ArrayList<Room> rooms = typeInventory.getRooms();
+			int day = startDay;
+			while(day < endDay)
+			{
+				int bestRoom = -1, bestUntil = day;
+				for(int i=0; i<rooms.size() && bestUntil < endDay; i++)
+				{
+					int until = getOccupancy(rooms.get(i).getRoomNumber()).getFreeUntil(day, endDay);
+					if(until > bestUntil)
+					{
+						bestRoom = rooms.get(i).getRoomNumber();
+						bestUntil = until;
+					}
+				}
+				if(bestRoom == -1)
+					break;
+				
+				roomNumbers.add(bestRoom);
+				legStartDays.add(day);
+				day = bestUntil;
+			}
+			
+			if(day >= endDay)
+			{
+				int[] legRooms = new int[roomNumbers.size()], legStarts = new int[legStartDays.size()];
+				for(int i=0; i<legRooms.length; i++)
+				{
+					legRooms[i] = roomNumbers.get(i);
+					legStarts[i] = legStartDays.get(i);
+				}
+				offers.add(new Offer(this, typeInventory.getRoomType(), typeInventory.getRate(), endDay - startDay, legRooms, legStarts));
+			}
+		}
+		return offers;
+	}
+	
+	/**
+	 * Returns the inventory of the rooms of a given type, building the inventories of all types from the rooms of this 
+	 * hotel if they do not exist yet, e.g. after this hotel was read from file.
+	 * @param roomType Type of room.
+	 * @return Returns the RoomTypeInventory of the given type. Returns null if this hotel has no rooms of the given type.
+	 */
+	protected synchronized RoomTypeInventory getRoomTypeInventory(String roomType)
+	{
+		return getInventory().get(roomType);
+	}
+	
+	/**
+	 * @return Returns the inventories of all room types, building them from the rooms of this hotel if they do not exist yet.
+	 */
+	private HashMap<String, RoomTypeInventory> getInventory()
+	{
+		if(inventory == null)
+		{
+			inventory = new HashMap<String, RoomTypeInventory>();
+			for(int i=0; i<hotelRooms.size(); i++)
+				addToInventory(hotelRooms.get(i));
+		}
+		return inventory;
 	}	
+	/**
+	 * Adds a given room to the inventory of its type.
+	 * @param room Room to add.
+	 */
+	private void addToInventory(Room room)
+	{
+		RoomTypeInventory typeInventory = inventory.get(room.toString());
+		if(typeInventory == null)
+		{
+			typeInventory = new RoomTypeInventory(room.toString());
+			if(occupancy != null)
+				typeInventory.resetLedger(occupancyDay - PAST_DAYS);
+			inventory.put(room.toString(), typeInventory);
+		}
+		typeInventory.addRoom(room);
+	}
+	
+	/**
+	 * Returns the occupancy bitmap of the room with the given room number.
+	 * @param roomNr Room number.
+	 * @return Returns the RoomOccupancy of the given room.
+	 */
+	private RoomOccupancy getOccupancy(int roomNr)
+	{
+		updateOccupancy();
+		RoomOccupancy roomOccupancy = occupancy.get(roomNr);
+		if(roomOccupancy == null)
+		{
+			roomOccupancy = new RoomOccupancy(occupancyDay - PAST_DAYS);
+			occupancy.put(roomNr, roomOccupancy);
+		}
+		return roomOccupancy;
+	}
+	
+	/**
+	 * Builds the occupancy bitmaps of all rooms and the ledgers of all room types from the upcoming reservations if they 
+	 * do not exist yet, e.g. after this hotel was read from file, and moves them forward once a day.
+	 */
+	private void updateOccupancy()
+	{
+		int today = (int) LocalDate.now().toEpochDay();
+		if(occupancy == null)
+		{
+			occupancy = new HashMap<Integer, RoomOccupancy>();
+			occupancyDay = today;
+			for(RoomTypeInventory typeInventory : getInventory().values())
+				typeInventory.resetLedger(today - PAST_DAYS);
+			for(int i=0; i<upcomingReservations.size(); i++)
+			{
+				getOccupancy(upcomingReservations.get(i).getRoomNumber()).add(upcomingReservations.get(i));
+				updateLedger(upcomingReservations.get(i), 1);
+			}
+		}
+		else if(today != occupancyDay)
+		{
+			occupancyDay = today;
+			for(RoomOccupancy roomOccupancy : occupancy.values())
+				roomOccupancy.advanceTo(today - PAST_DAYS);
+			for(RoomTypeInventory typeInventory : getInventory().values())
+				advanceLedger(typeInventory, today - PAST_DAYS);
+		}
+	}
+	
+	/**
+	 * Adds the nights of a given reservation to the ledger of its room type.
+	 * @param reservation Reservation booked or cancelled.
+	 * @param delta 1 if the reservation was booked, -1 if it was cancelled.
+	 */
+	private void updateLedger(Reservation reservation, int delta)
+	{
+		RoomTypeInventory typeInventory = getRoomTypeInventory(reservation.getRoomType());
+		if(typeInventory != null)
+		{
+			typeInventory.book(reservation.getStartDay(), reservation.getEndDay(), delta);
+		}
+	}
+	
+	/**
+	 * Moves the ledger of a given room type forward to a given day and books the reservations of the days added at its end.
+	 * @param typeInventory Inventory of a room type.
+	 * @param day Epoch day of the new first day covered.
+	 */
+	private void advanceLedger(RoomTypeInventory typeInventory, int day)
+	{
+		int from = Math.max(typeInventory.getLedgerEnd(), day);
+		typeInventory.advanceLedger(day);
+		int to = typeInventory.getLedgerEnd();
+		
+		ArrayList<Room> rooms = typeInventory.getRooms();
+		for(int i=0; i<rooms.size(); i++)
+		{
+			RoomOccupancy roomOccupancy = occupancy.get(rooms.get(i).getRoomNumber());
+			if(roomOccupancy == null)
+				continue;
+			ArrayList<Reservation> reservations = roomOccupancy.getReservationsBetween(from, to);
+			for(int j=0; j<reservations.size(); j++)
+				if(reservations.get(j).getRoomType().equals(typeInventory.getRoomType()))
+				{
+					int startDay = reservations.get(j).getStartDay();
+					int endDay = reservations.get(j).getEndDay();
+					typeInventory.book(Math.max(startDay, from), Math.min(endDay, to), 1);
+				}
+		}
+	}
+	
+	/**
+	 * Returns the number of rooms of a given type available each night of a given time frame, e.g. to check whether 
+	 * the type is sold out. Nights within the booking horizon are read from the ledger of the type; nights outside it
+	 * are counted room by room. Must be called while holding the lock of the shard of this hotel, 
+	 * see ReservationManager.getAvailability().
+	 * @param roomType Type of room.
+	 * @param startDay Epoch day of the first night.
+	 * @param endDay Epoch day after the last night.
+	 * @return Returns the number of available rooms for each night from the start day up to the end day.
+	 */
+	protected synchronized int[] getAvailability(String roomType, int startDay, int endDay)
+	{
+		int[] availability = new int[Math.max(0, endDay - startDay)];
+		RoomTypeInventory typeInventory = getRoomTypeInventory(roomType);
+		if(typeInventory == null)
+			return availability;
+		
+		updateOccupancy();
+		for(int i=0; i<availability.length; i++)
+			if(typeInventory.isInLedger(startDay + i))
+				availability[i] = typeInventory.getAvailableRooms(startDay + i);
+			else
+			{
+				ArrayList<Room> rooms = typeInventory.getRooms();
+				for(int j=0; j<rooms.size(); j++)
+					if(isRoomAvailableBetween(rooms.get(j).getRoomNumber(), startDay + i, startDay + i + 1))
+						availability[i]++;
+			}
+		return availability;
+	}
 	
 	/**
 	 * @return Returns the name of this hotel.
@@ -127,6 +437,14 @@ public class Hotel implements Serializable
 		return name;
 	}
 	
+	/**
+	 * @return Returns the rooms of this hotel.
+	 */
+	protected ArrayList<Room> getRooms()
+	{
+		return hotelRooms;
+	}
+	
 	/**
 	 * @return Returns the number of rooms in this hotel.
 	 */
@@ -143,12 +461,15 @@ public class Hotel implements Serializable
 		return roomTypes;
 	}	
 	
+	/**
+	 * @param roomType Type of room.
+	 * @return Returns the nightly rate of the given type of room. Returns -1 if this hotel has no rooms of the given type.
+	 */
 	public int getRateOfRoom(String roomType)
 	{
-		for(int i=1; i<=hotelRooms.size(); i++)
-			if(hotelRooms.get(i-1).toString().equals(roomType))
-				return hotelRooms.get(i-1).getRate();
-		
-		return -1;
+		RoomTypeInventory typeInventory = getRoomTypeInventory(roomType);
+		if(typeInventory == null)
+			return -1;
+		return typeInventory.getRate();
 	}
 }
\ No newline at end of file
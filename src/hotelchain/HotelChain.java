@@ -1,19 +1,36 @@
 package hotelchain;
 
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 /**
  * Main class of the HotelChain application. Contains chain and hotel information 
  * as well as its guest and registration management systems.
  * Extends the FileHandler class to store/export HotelChain configuration.
+ * The hotel configuration, guests and reservations are loaded in parallel, unless the system property 
+ * "hotelchain.parallelStartup" is set to false. Their getters wait until they have been loaded, so the first screen of 
+ * an interface can be shown before loading has finished. Set "hotelchain.startupTimings" to true to print the time 
+ * taken by each phase of loading.
  * @author Joost Janssen
  */
 public class HotelChain extends FileHandler
 {	
 	private final String name;
 	private Hotel[] hotels;
-	private GuestRegistration guests;
-	private ReservationManager reservations;
+	private CompletableFuture<Hotel[]> loadedHotels;
+	private CompletableFuture<GuestRegistration> guests;
+	private CompletableFuture<ReservationManager> reservations;
+	private final long startupTime = System.nanoTime();
+	private final ArrayList<String> startupTimings = new ArrayList<String>();
 	
 	private final int NUMBER_OF_HOTELS = 3;	
 	private final String[] hotelNames = new String[] { "SimpleHotel", "MediocreHotel", "FancyHotel" };
@@ -21,18 +38,94 @@ public class HotelChain extends FileHandler
 	private final int[] roomsInHotel = new int[] { 60, 60, 80 };
 	private final int standardRate = 50; //Nightly rate for a single bed in the cheapest hotel, to be used as baseline.
 	private final static String filename = "hotelchain.hotelsConfiguration";
+	private final static String parallel_property = "hotelchain.parallelStartup";
+	private final static String timings_property = "hotelchain.startupTimings";
 	
 	/**
 	 * Constructs an instance of a HotelChain and creates instances of its guest registration and reservation manager systems.
 	 * Reads hotel configuration from file, or else create new configuration as specified in method createHotels().
+	 * Unless parallel startup was disabled, returns once loading has started instead of once it has finished.
+	 * Registers a shutdown hook that calls close(), so changes still queued are written when the application exits.
 	 * @param _name Name of this HotelChain.
 	 */
-	@SuppressWarnings("unchecked")
 	public HotelChain(String _name)
 	{
 		super(filename);
 		name = _name;
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() 
+		{
+			public void run()
+			{
+				close();
+			}
+		}, "hotelchain-shutdown"));
+		
+		if(!Boolean.parseBoolean(System.getProperty(parallel_property, "true")))
+		{
+			loadedHotels = CompletableFuture.completedFuture(loadHotels());
+			guests = CompletableFuture.completedFuture(loadGuests());
+			reservations = CompletableFuture.completedFuture(loadReservations(null));
+			reportPhase("Startup complete", startupTime);
+			return;
+		}
 		
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.max(3, Runtime.getRuntime().availableProcessors()), 
+			new ThreadFactory() 
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "hotelchain-startup");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		
+		loadedHotels = CompletableFuture.supplyAsync(new Supplier<Hotel[]>() 
+		{
+			public Hotel[] get()
+			{
+				return loadHotels();
+			}
+		}, executor);
+		guests = CompletableFuture.supplyAsync(new Supplier<GuestRegistration>() 
+		{
+			public GuestRegistration get()
+			{
+				return loadGuests();
+			}
+		}, executor);
+		reservations = CompletableFuture.supplyAsync(new Supplier<ReservationManager>() 
+		{
+			public ReservationManager get()
+			{
+				return loadReservations(executor);
+			}
+		}, executor);
+		
+		CompletableFuture.allOf(loadedHotels, guests, reservations).whenComplete(new BiConsumer<Void, Throwable>() 
+		{
+			public void accept(Void result, Throwable failure)
+			{
+				executor.shutdown();
+				if(failure != null)
+				{
+					System.out.println("There was an error loading " + name);
+					failure.printStackTrace();
+				}
+				else
+					reportPhase("Startup complete", startupTime);
+			}
+		});
+	}
+	
+	/**
+	 * Reads the hotel configuration from file, or creates it if the file does not exist.
+	 * @return Returns the Hotels of this chain.
+	 */
+	@SuppressWarnings("unchecked")
+	private Hotel[] loadHotels()
+	{
+		long start = System.nanoTime();
 		if(createNewFile())
 		{
 			hotels = new Hotel[NUMBER_OF_HOTELS];
@@ -45,9 +138,49 @@ public class HotelChain extends FileHandler
 			for(int i=0; i< hotelList.size(); i++)
 				hotels[i] = hotelList.get(i);
 		}
-		
-		guests = new GuestRegistration(); 
-		reservations = new ReservationManager(hotels);
+		reportPhase("Hotels loaded", start);
+		return hotels;
+	}
+	
+	/**
+	 * Creates the guest registration system, reading the registered guests.
+	 * @return Returns the GuestRegistration of this chain.
+	 */
+	private GuestRegistration loadGuests()
+	{
+		long start = System.nanoTime();
+		GuestRegistration guestRegistration = new GuestRegistration();
+		reportPhase("Guests loaded", start);
+		return guestRegistration;
+	}
+	
+	/**
+	 * Creates the reservation manager, reading the reservations while the hotel configuration may still be loading.
+	 * @param executor Executor to pass reservations to the hotels in parallel, or null to pass them one hotel at a time.
+	 * @return Returns the ReservationManager of this chain.
+	 */
+	private ReservationManager loadReservations(ExecutorService executor)
+	{
+		long start = System.nanoTime();
+		ReservationManager reservationManager = new ReservationManager(loadedHotels, executor);
+		reportPhase("Reservations loaded", start);
+		return reservationManager;
+	}
+	
+	/**
+	 * Records the time taken by a phase of loading this chain, and prints it if the system property "hotelchain.startupTimings" is true.
+	 * @param phase Name of phase.
+	 * @param start Value of System.nanoTime() when the phase started.
+	 */
+	private void reportPhase(String phase, long start)
+	{
+		String timing = phase + ": " + (System.nanoTime() - start) / 1000000 + " ms.";
+		synchronized(startupTimings)
+		{
+			startupTimings.add(timing);
+		}
+		if(Boolean.getBoolean(timings_property))
+			System.out.println("# " + timing);
 	}
 	
 	/**
@@ -96,6 +229,48 @@ public class HotelChain extends FileHandler
 		writeFile(hotelList, -1);			
 	}
 	
+	/**
+	 * Stops the background archival job and waits until all changes to guests and reservations still queued are written.
+	 * Called when the interface exits and again by the shutdown hook; calling it more than once does no harm.
+	 */
+	protected void close()
+	{
+		getReservationManager().close();
+		getGuestRegistration().closeJournal();
+	}
+	
+	/**
+	 * Searches all hotels of this chain in parallel for rooms available during a given time frame that meet the given constraints.
+	 * Each hotel is searched by a separate task on the common fork-join pool, so the search takes about as long as 
+	 * searching the slowest hotel.
+	 * @param startDate Arrival date.
+	 * @param endDate Departure date.
+	 * @param minBeds Minimum number of beds, or 0 for any number.
+	 * @param maxRate Maximum nightly rate, or -1 for any rate.
+	 * @return Returns the Offers of all hotels, cheapest first and with fewest room moves first among equally priced offers.
+	 */
+	public ArrayList<Offer> findOffers(Calendar startDate, Calendar endDate, int minBeds, int maxRate)
+	{
+		ArrayList<Offer> offers = ForkJoinPool.commonPool().invoke(new OfferSearch(getReservationManager(), getHotels(), 0, getHotels().length, 
+				BinaryCodec.toEpochDay(startDate), BinaryCodec.toEpochDay(endDate), minBeds, maxRate));
+		Collections.sort(offers);
+		return offers;
+	}
+	
+	/**
+	 * Returns the number of rooms of a given type available each night at a given hotel of this chain, e.g. to show
+	 * on which nights the type is sold out.
+	 * @param hotel Hotel of this chain.
+	 * @param roomType Type of room.
+	 * @param startDate Date of the first night.
+	 * @param endDate Date after the last night.
+	 * @return Returns the number of available rooms for each night from the start date up to the end date.
+	 */
+	public int[] getAvailability(Hotel hotel, String roomType, Calendar startDate, Calendar endDate)
+	{
+		return getReservationManager().getAvailability(hotel, roomType, startDate, endDate);
+	}
+	
 	/**
 	 * @return Returns a string representation of this hotel chain's name.
 	 */
@@ -109,7 +284,7 @@ public class HotelChain extends FileHandler
 	 */
 	protected Hotel[] getHotels()
 	{
-		return hotels;
+		return loadedHotels.join();
 	}
 	
 	/**
@@ -117,7 +292,7 @@ public class HotelChain extends FileHandler
 	 */
 	protected ReservationManager getReservationManager()
 	{
-		return reservations;
+		return reservations.join();
 	}
 	
 	/**
@@ -125,6 +300,69 @@ public class HotelChain extends FileHandler
 	 */
 	protected GuestRegistration getGuestRegistration()
 	{
-		return guests;
+		return guests.join();
+	}
+	
+	/**
+	 * @return Returns the time taken by each phase of loading this chain that has finished so far.
+	 */
+	protected ArrayList<String> getStartupTimings()
+	{
+		synchronized(startupTimings)
+		{
+			return new ArrayList<String>(startupTimings);
+		}
+	}
+	
+	/**
+	 * Searches a range of hotels for offers by splitting the range in halves until a single hotel remains.
+	 */
+	private static class OfferSearch extends RecursiveTask<ArrayList<Offer>>
+	{
+		private static final long serialVersionUID = 1L;
+		private final ReservationManager reservationManager;
+		private final Hotel[] hotels;
+		private final int from, to, startDay, endDay, minBeds, maxRate;
+		
+		/**
+		 * Constructs a search of the hotels from a given index up to another.
+		 * @param _reservationManager Reservation manager of the hotels.
+		 * @param _hotels Hotels of the chain.
+		 * @param _from Index of the first hotel to search.
+		 * @param _to Index after the last hotel to search.
+		 * @param _startDay Epoch day of arrival.
+		 * @param _endDay Epoch day of departure.
+		 * @param _minBeds Minimum number of beds.
+		 * @param _maxRate Maximum nightly rate, or -1 for any rate.
+		 */
+		private OfferSearch(ReservationManager _reservationManager, Hotel[] _hotels, int _from, int _to, int _startDay, int _endDay, int _minBeds, int _maxRate)
+		{
+			reservationManager = _reservationManager;
+			hotels = _hotels;
+			from = _from;
+			to = _to;
+			startDay = _startDay;
+			endDay = _endDay;
+			minBeds = _minBeds;
+			maxRate = _maxRate;
+		}
+		
+		@Override
+		protected ArrayList<Offer> compute()
+		{
+			if(to - from <= 1)
+			{
+				if(to == from)
+					return new ArrayList<Offer>();
+				return reservationManager.findOffers(hotels[from], startDay, endDay, minBeds, maxRate);
+			}
+			
+			int middle = (from + to) / 2;
+			OfferSearch left = new OfferSearch(reservationManager, hotels, from, middle, startDay, endDay, minBeds, maxRate);
+			left.fork();
+			ArrayList<Offer> offers = new OfferSearch(reservationManager, hotels, middle, to, startDay, endDay, minBeds, maxRate).compute();
+			offers.addAll(left.join());
+			return offers;
+		}
 	}
-}
\ No newline at end of file
+}
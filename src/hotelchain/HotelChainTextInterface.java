@@ -1,5 +1,7 @@
 package hotelchain;
 
+import java.util.ArrayList;
+
 /**
  * Represents the main menu of the HoteChain text-based user interface.
  * Extends TextInterface for basic text-based user interface functionality. 
@@ -19,8 +21,6 @@ public class HotelChainTextInterface extends TextInterface
 	{
 		super();
 		chain = _chain;		
-		guestRegistrationTextInterface = new GuestRegistrationTextInterface(chain.getGuestRegistration());
-		reservationManagerTextInterface = new ReservationManagerTextInterface(chain.getReservationManager(), chain.getGuestRegistration());
 		
 		printHeader("Welcome to " + chain.getName() + ". ");		
 		while(!exitRequested)
@@ -45,8 +45,12 @@ public class HotelChainTextInterface extends TextInterface
 			case 1: 
 				showAbout(); break;
 			case 2:
+				if(guestRegistrationTextInterface == null)
+					guestRegistrationTextInterface = new GuestRegistrationTextInterface(chain.getGuestRegistration());
 				guestRegistrationTextInterface.init(); break;
 			case 3: 
+				if(reservationManagerTextInterface == null)
+					reservationManagerTextInterface = new ReservationManagerTextInterface(chain.getReservationManager(), chain.getGuestRegistration());
 				reservationManagerTextInterface.init(); break;
 			default: 
 				exitRequested = true; 
@@ -84,6 +88,10 @@ public class HotelChainTextInterface extends TextInterface
 		}		
 		
 		print("Total number of reservations: " + chain.getReservationManager().getNumberOfReservations());
+		printSingleLine();
+		ArrayList<String> timings = chain.getStartupTimings();
+		for(int i=0; i < timings.size(); i++)
+			print(timings.get(i));
 		printDoubleLine();
 	}	
 }
\ No newline at end of file
@@ -0,0 +1,198 @@
+package hotelchain;
+
+import java.util.ArrayList;
+
+/**
+ * Maps int keys to objects without boxing the keys. Keys and values are kept in two arrays, and a key is found
+ * by probing the slots following the slot its hash points to, so getting, putting and removing a key takes
+ * constant time on average. The arrays are doubled once they are half full.
+ * Null values are not allowed; an empty slot is a slot without value. Not thread-safe.
+ * @author Joost Janssen
+ * @param <V> Type of values.
+ */
+public class IntObjectMap<V>
+{
+	private final static int INITIAL_CAPACITY = 16;	// Number of slots, a power of two.
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+
+	/**
+	 * Constructs an empty map.
+	 */
+	public IntObjectMap()
+	{
+		keys = new int[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @param key Key.
+	 * @return Returns the value of the given key, or null if the map does not contain it.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key)
+	{
+		int slot = findSlot(key);
+		return (V) values[slot];
+	}
+
+	/**
+	 * @param key Key.
+	 * @return Returns whether the map contains the given key.
+	 */
+	public boolean containsKey(int key)
+	{
+		return values[findSlot(key)] != null;
+	}
+
+	/**
+	 * Sets the value of a given key.
+	 * @param key Key.
+	 * @param value Value, not null.
+	 * @return Returns the previous value of the given key, or null if the map did not contain it.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value)
+	{
+		if(value == null)
+			throw new NullPointerException("IntObjectMap does not allow null values");
+
+		int slot = findSlot(key);
+		V previous = (V) values[slot];
+		keys[slot] = key;
+		values[slot] = value;
+		if(previous == null && ++size * 2 > keys.length)
+			resize(keys.length * 2);
+		return previous;
+	}
+
+	/**
+	 * Removes a given key. Moves the keys probed after it back, so that no slot needs to be marked as removed.
+	 * @param key Key.
+	 * @return Returns the value of the removed key, or null if the map did not contain it.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key)
+	{
+		int slot = findSlot(key);
+		V previous = (V) values[slot];
+		if(previous == null)
+			return null;
+
+		int mask = keys.length - 1;
+		int empty = slot;
+		values[empty] = null;
+		for(int next = (empty + 1) & mask; values[next] != null; next = (next + 1) & mask)
+		{
+			int home = hash(keys[next]) & mask;
+			// The key in next can fill the empty slot if the empty slot lies between its home slot and next, cyclically.
+			if(((next - home) & mask) >= ((next - empty) & mask))
+			{
+				keys[empty] = keys[next];
+				values[empty] = values[next];
+				values[next] = null;
+				empty = next;
+			}
+		}
+		size--;
+		return previous;
+	}
+
+	/**
+	 * @return Returns the number of keys in the map.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return Returns the number of slots of the map, which is at least twice the number of keys.
+	 */
+	public int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * Removes all keys.
+	 */
+	public void clear()
+	{
+		keys = new int[INITIAL_CAPACITY];
+		values = new Object[INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * @return Returns the keys of the map, in no particular order.
+	 */
+	public int[] keys()
+	{
+		int[] result = new int[size];
+		int i = 0;
+		for(int slot=0; slot<keys.length; slot++)
+			if(values[slot] != null)
+				result[i++] = keys[slot];
+		return result;
+	}
+
+	/**
+	 * @return Returns a list of the values of the map, in no particular order.
+	 */
+	@SuppressWarnings("unchecked")
+	public ArrayList<V> values()
+	{
+		ArrayList<V> result = new ArrayList<V>(size);
+		for(int slot=0; slot<values.length; slot++)
+			if(values[slot] != null)
+				result.add((V) values[slot]);
+		return result;
+	}
+
+	/**
+	 * Finds the slot of a given key.
+	 * @param key Key.
+	 * @return Returns the slot holding the given key, or the empty slot where it would be put.
+	 */
+	private int findSlot(int key)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while(values[slot] != null && keys[slot] != key)
+			slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	/**
+	 * Moves all keys to arrays with a given number of slots.
+	 * @param capacity Number of slots, a power of two.
+	 */
+	private void resize(int capacity)
+	{
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		for(int i=0; i<oldKeys.length; i++)
+			if(oldValues[i] != null)
+			{
+				int slot = findSlot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+	}
+
+	/**
+	 * Spreads consecutive keys, such as reservation IDs, over the slots.
+	 * @param key Key.
+	 * @return Returns the hash of the given key.
+	 */
+	private static int hash(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
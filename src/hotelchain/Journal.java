@@ -0,0 +1,447 @@
+package hotelchain;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Append-only log of JournalEntries, kept next to the file of a FileHandler.
+ * Every change costs one small append instead of a rewrite of the whole file;
+ * on startup the entries are replayed on top of the last file written by the FileHandler.
+ * Each entry is stored as its length followed by its BinaryCodec encoding, so a half-written last entry is detected and ignored.
+ * The log is split into numbered generations ("filename.1", "filename.2", ...) so a snapshot can cover
+ * all generations up to a given one while new entries are appended to the next.
+ * Entries are written by a writer thread that groups the entries of concurrent callers into a single write and sync.
+ * @author Joost Janssen
+ */
+public class Journal
+{
+	protected final static int SYNC_EACH = 1;		// Changes are durable once written and synced to disk; concurrent changes share a sync.
+	protected final static int SYNC_BATCHED = 2;	// Changes are durable once written and synced to disk; syncs happen every syncInterval ms.
+	protected final static int OS_BUFFERED = 3;		// Changes are durable once written to the operating system, which syncs them at its own pace.
+	
+	private final String filename;
+	private final BinaryCodec codec = new BinaryCodec();
+	private final int durability;
+	private final long syncInterval;
+	private int generation;
+	private int numberOfEntries;
+	
+	private ArrayList<PendingRecord> pendingRecords = new ArrayList<PendingRecord>();
+	private Thread writer;
+	private boolean writing;
+	private boolean closing;
+	private FileOutputStream outputStream;
+	private int outputGeneration;
+
+	/**
+	 * Constructs a new Journal handling the log files starting with filename.
+	 * New entries are appended to a generation following the ones already on disk.
+	 * Uses the durability policy given by the system properties "hotelchain.durability" ("sync", "batched" or "buffered", 
+	 * the default) and "hotelchain.syncInterval" (in ms, 10 by default).
+	 * @param _filename Name of log file, without generation number.
+	 */
+	public Journal(String _filename)
+	{
+		this(_filename, getDurabilityProperty(), Long.getLong("hotelchain.syncInterval", 10));
+	}
+	
+	/**
+	 * Constructs a new Journal handling the log files starting with filename, using a given durability policy.
+	 * New entries are appended to a generation following the ones already on disk.
+	 * @param _filename Name of log file, without generation number.
+	 * @param _durability Durability policy: SYNC_EACH, SYNC_BATCHED or OS_BUFFERED.
+	 * @param _syncInterval Time between syncs in ms when using SYNC_BATCHED.
+	 */
+	public Journal(String _filename, int _durability, long _syncInterval)
+	{
+		filename = _filename;
+		durability = _durability;
+		syncInterval = _syncInterval;
+
+		ArrayList<Integer> generations = getGenerationsOnDisk();
+		if(generations.isEmpty())
+			generation = 1;
+		else
+			generation = generations.get(generations.size()-1) + 1;
+	}
+
+	/**
+	 * Queues a given entry to be appended to the end of the current generation.
+	 * Entries queued by concurrent callers are written by a single writer thread with a single write and, depending 
+	 * on the durability policy, a single sync.
+	 * @param entry JournalEntry to be appended.
+	 * @return Returns a future that completes with whether the entry was successfully appended, once it is durable.
+	 */
+	protected synchronized CompletableFuture<Boolean> append(JournalEntry entry)
+	{
+		byte[] bytes;
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			codec.writeEntry(new DataOutputStream(buffer), entry);
+			
+			ByteArrayOutputStream record = new ByteArrayOutputStream(buffer.size() + 4);
+			DataOutputStream recordStream = new DataOutputStream(record);
+			recordStream.writeInt(buffer.size());
+			buffer.writeTo(recordStream);
+			bytes = record.toByteArray();
+		} catch (IOException e) {
+			System.out.println("There was an error writing the journal " + filename);
+			e.printStackTrace();
+			return CompletableFuture.completedFuture(false);
+		}
+		
+		if(writer == null)
+			startWriter();
+		
+		PendingRecord record = new PendingRecord(bytes, generation);
+		pendingRecords.add(record);
+		numberOfEntries++;
+		notifyAll();
+		return record.commit;
+	}
+	
+	/**
+	 * Starts the writer thread. To be called while holding the lock of this journal.
+	 */
+	private void startWriter()
+	{
+		writer = new Thread(new Runnable() {
+			public void run()
+			{
+				writePendingRecords();
+			}
+		}, "Journal " + filename);
+		writer.setDaemon(true);
+		writer.start();
+	}
+	
+	/**
+	 * Writes the queued entries until the application exits or the journal is closed. Once closed, writes and syncs 
+	 * the entries still queued before stopping. Runs in the writer thread.
+	 */
+	private void writePendingRecords()
+	{
+		ArrayList<PendingRecord> unsynced = new ArrayList<PendingRecord>();
+		long lastSync = System.currentTimeMillis();
+		
+		while(true)
+		{
+			ArrayList<PendingRecord> batch;
+			synchronized(this) {
+				writing = false;
+				notifyAll();
+				try {
+					while(pendingRecords.isEmpty() && !closing)
+					{
+						if(unsynced.isEmpty())
+							wait();
+						else
+						{
+							long remaining = lastSync + syncInterval - System.currentTimeMillis();
+							if(remaining <= 0)
+								break;
+							wait(remaining);
+						}
+					}
+				} catch (InterruptedException e) {
+					return;
+				}
+				if(pendingRecords.isEmpty() && closing)
+				{
+					if(!unsynced.isEmpty())
+						complete(unsynced, sync());
+					return;
+				}
+				batch = pendingRecords;
+				pendingRecords = new ArrayList<PendingRecord>();
+				writing = true;
+			}
+			
+			boolean written = write(batch);
+			if(!written || durability == OS_BUFFERED)
+				complete(batch, written);
+			else if(durability == SYNC_EACH)
+				complete(batch, sync());
+			else
+			{
+				unsynced.addAll(batch);
+				if(System.currentTimeMillis() - lastSync >= syncInterval)
+				{
+					complete(unsynced, sync());
+					unsynced.clear();
+					lastSync = System.currentTimeMillis();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Writes a given batch of records to the log files of their generations, with one write per generation.
+	 * @param batch Records to be written.
+	 * @return Returns whether the records were successfully written.
+	 */
+	private boolean write(ArrayList<PendingRecord> batch)
+	{
+		try {
+			int i = 0;
+			while(i < batch.size())
+			{
+				int recordGeneration = batch.get(i).generation;
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				for(; i<batch.size() && batch.get(i).generation == recordGeneration; i++)
+					buffer.write(batch.get(i).bytes);
+				
+				if(outputStream == null || outputGeneration != recordGeneration)
+				{
+					closeOutputStream();
+					outputStream = new FileOutputStream(filename + "." + recordGeneration, true);
+					outputGeneration = recordGeneration;
+				}
+				buffer.writeTo(outputStream);
+			}
+		} catch (IOException e) {
+			System.out.println("There was an error writing the journal " + filename);
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Syncs the log file currently written to disk.
+	 * @return Returns whether the log file was successfully synced.
+	 */
+	private boolean sync()
+	{
+		try {
+			if(outputStream != null)
+				outputStream.getChannel().force(false);
+		} catch (IOException e) {
+			System.out.println("There was an error syncing the journal " + filename);
+			e.printStackTrace();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Syncs, if the durability policy requires it, and closes the log file currently written.
+	 */
+	private void closeOutputStream()
+	{
+		if(outputStream == null)
+			return;
+		if(durability != OS_BUFFERED)
+			sync();
+		try {
+			outputStream.close();
+		} catch (IOException e) {
+			System.out.println("There was an error writing the journal: Could not close file " + filename + "." + outputGeneration);
+			e.printStackTrace();
+		}
+		outputStream = null;
+	}
+	
+	/**
+	 * Completes the futures of a given batch of records.
+	 * @param batch Records whose futures are to be completed.
+	 * @param durable Whether the records were successfully made durable.
+	 */
+	private void complete(ArrayList<PendingRecord> batch, boolean durable)
+	{
+		for(int i=0; i<batch.size(); i++)
+			batch.get(i).commit.complete(durable);
+	}
+	
+	/**
+	 * Waits until all queued entries were written.
+	 */
+	protected synchronized void flush()
+	{
+		try {
+			while(!pendingRecords.isEmpty() || writing)
+				wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reads all entries from all generations on disk, in the order in which they were appended.
+	 * Stops reading a generation at its first incomplete or unreadable entry.
+	 * @return Returns an ArrayList of the entries in the log files. Returns an empty list if there are no log files.
+	 */
+	protected synchronized ArrayList<JournalEntry> readEntries()
+	{
+		ArrayList<JournalEntry> entries = new ArrayList<JournalEntry>();
+		ArrayList<Integer> generations = getGenerationsOnDisk();
+		for(int i=0; i<generations.size(); i++)
+			readEntries(filename + "." + generations.get(i), entries);
+
+		return entries;
+	}
+
+	/**
+	 * Reads the entries of a single log file and adds them to a given list.
+	 * @param logFilename Name of log file.
+	 * @param entries ArrayList to add the entries read to.
+	 */
+	private void readEntries(String logFilename, ArrayList<JournalEntry> entries)
+	{
+		DataInputStream inputStream = null;
+		try {
+			inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(logFilename)));
+			while(true)
+			{
+				int length = inputStream.readInt();
+				byte[] bytes = new byte[length];
+				inputStream.readFully(bytes);
+
+				entries.add(codec.readEntry(new DataInputStream(new ByteArrayInputStream(bytes))));
+			}
+		} catch (EOFException e) {
+			// End of journal, or an entry that was only partially written.
+		} catch (IOException e) {
+			System.out.println("There was an error reading the journal " + logFilename + ", replaying " + entries.size() + " entries.");
+			e.printStackTrace();
+		}
+
+		if(inputStream != null)
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				System.out.println("There was an error reading the journal: Could not close file " + logFilename);
+				e.printStackTrace();
+			}
+	}
+
+	/**
+	 * Continues appending to a new generation. Entries queued before this call are still written to the current one.
+	 * @return Returns the number of the generation that was closed.
+	 */
+	protected synchronized int rotate()
+	{
+		numberOfEntries = 0;
+		return generation++;
+	}
+
+	/**
+	 * Deletes all generations up to and including a given one. To be called once their entries are contained in the file of the FileHandler.
+	 * @param lastGeneration Number of the last generation to be deleted.
+	 * @return Returns whether the generations were successfully deleted.
+	 */
+	protected synchronized boolean clear(int lastGeneration)
+	{
+		boolean cleared = true;
+		ArrayList<Integer> generations = getGenerationsOnDisk();
+		for(int i=0; i<generations.size(); i++)
+			if(generations.get(i) <= lastGeneration)
+			{
+				File file = new File(filename + "." + generations.get(i));
+				if(!file.delete())
+				{
+					System.out.println("There was an error clearing the journal " + file.getName());
+					cleared = false;
+				}
+			}
+		return cleared;
+	}
+
+	/**
+	 * Stops the writer thread once it has written and synced all queued entries, and closes the log file. 
+	 * The log file is reopened and the writer restarted by the next append.
+	 */
+	protected void close()
+	{
+		Thread stopping;
+		synchronized(this) {
+			closing = true;
+			notifyAll();
+			stopping = writer;
+		}
+		if(stopping != null)
+			try {
+				stopping.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		synchronized(this) {
+			closeOutputStream();
+			writer = null;
+			closing = false;
+			if(!pendingRecords.isEmpty())
+				startWriter();
+		}
+	}
+
+	/**
+	 * @return Returns the number of entries appended to the current generation.
+	 */
+	protected synchronized int getNumberOfEntries()
+	{
+		return numberOfEntries;
+	}
+
+	/**
+	 * Reads the durability policy from the system property "hotelchain.durability".
+	 * @return Returns SYNC_EACH, SYNC_BATCHED or OS_BUFFERED.
+	 */
+	protected static int getDurabilityProperty()
+	{
+		String property = System.getProperty("hotelchain.durability", "buffered");
+		if(property.equals("sync"))
+			return SYNC_EACH;
+		if(property.equals("batched"))
+			return SYNC_BATCHED;
+		return OS_BUFFERED;
+	}
+
+	/**
+	 * @return Returns the sorted generation numbers of the log files currently on disk.
+	 */
+	private ArrayList<Integer> getGenerationsOnDisk()
+	{
+		ArrayList<Integer> generations = new ArrayList<Integer>();
+		File directory = new File(filename).getAbsoluteFile().getParentFile();
+		String prefix = new File(filename).getName() + ".";
+
+		String[] names = directory.list();
+		if(names != null)
+			for(int i=0; i<names.length; i++)
+				if(names[i].startsWith(prefix))
+					try {
+						generations.add(Integer.parseInt(names[i].substring(prefix.length())));
+					} catch (NumberFormatException e) {
+						// Not a generation of this journal.
+					}
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * An encoded entry waiting to be written, together with the generation it belongs to and its future.
+	 */
+	private static class PendingRecord
+	{
+		private final byte[] bytes;
+		private final int generation;
+		private final CompletableFuture<Boolean> commit = new CompletableFuture<Boolean>();
+
+		private PendingRecord(byte[] _bytes, int _generation)
+		{
+			bytes = _bytes;
+			generation = _generation;
+		}
+	}
+}
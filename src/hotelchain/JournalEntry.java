@@ -0,0 +1,54 @@
+package hotelchain;
+
+/**
+ * Represents a single change recorded in a Journal, such as a reservation being booked or a guest being registered.
+ * Instances are appended to a journal file using the BinaryCodec.
+ * @author Joost Janssen
+ */
+public class JournalEntry
+{
+	protected final static int RESERVE = 1;
+	protected final static int CANCEL = 2;
+	protected final static int REGISTER = 3;
+	protected final static int REMOVE = 4;
+
+	private final int type, id;
+	private final Object payload;
+
+	/**
+	 * Constructs a new JournalEntry of a given type, concerning the object with the given ID number.
+	 * @param _type Type of change: RESERVE, CANCEL, REGISTER or REMOVE.
+	 * @param _id ID number of the object that was changed.
+	 * @param _payload Object that was changed, or null if the ID number suffices to replay the change.
+	 */
+	public JournalEntry(int _type, int _id, Object _payload)
+	{
+		type = _type;
+		id = _id;
+		payload = _payload;
+	}
+
+	/**
+	 * @return Returns the type of change recorded by this entry.
+	 */
+	protected int getType()
+	{
+		return type;
+	}
+
+	/**
+	 * @return Returns the ID number of the object that was changed.
+	 */
+	protected int getID()
+	{
+		return id;
+	}
+
+	/**
+	 * @return Returns the object that was changed, or null if none was recorded.
+	 */
+	protected Object getPayload()
+	{
+		return payload;
+	}
+}
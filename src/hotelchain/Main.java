@@ -14,6 +14,7 @@ public class Main {
 		HotelChain chain = new HotelChain("Hotel's Hotels");
 		
 		new HotelChainTextInterface(chain);		
+		chain.close();
 	//	new HotelChainGUI(chain);		
 	}
 }
\ No newline at end of file
@@ -0,0 +1,469 @@
+package hotelchain;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores Reservations as fixed-width records in a memory-mapped file, indexed by reservation ID.
+ * Reading or changing a reservation is an offset computation followed by a read or write of its record,
+ * so changing a reservation writes only its record, and there is no journal to replay or snapshot to rewrite.
+ * On startup, the ReservationManager only reads the upcoming reservations. It reads just the fields it indexes of
+ * past and cancelled reservations, and reads those reservations from their records when they are needed.
+ *
+ * Changes are made durable by commit() according to the same policy as a Journal: a syncer thread forces the
+ * changes of concurrent callers to disk with a single sync, or once every syncInterval ms. By default changes are
+ * left to the operating system, which writes the mapped pages at its own pace.
+ *
+ * The file starts with a header of HEADER_SIZE bytes holding MAGIC, VERSION, the reservation ID counter and a
+ * dictionary of the hotel names and room types used by the records, followed by one record of RECORD_SIZE bytes
+ * per reservation ID.
+ * @author Joost Janssen
+ */
+public class MappedReservationStore
+{
+	protected final static int MAGIC = 0x48434d53;		// "HCMS"
+	protected final static short VERSION = 1;
+
+	private final static int HEADER_SIZE = 4096;
+	private final static int DICTIONARY_OFFSET = 16;
+	private final static int RECORD_SIZE = 32;
+	private final static int INITIAL_CAPACITY = 1024;	// Number of records the file initially has room for.
+
+	private final static byte PRESENT = 1;
+	private final static byte CANCELLED = 2;
+	private final static byte REMOVED = 4;
+
+	private final String filename;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int capacity;
+	private int IDcounter;
+	private ArrayList<String> dictionary;
+	private HashMap<String, Integer> dictionaryIDs;
+
+	private final int durability = Journal.getDurabilityProperty();
+	private final long syncInterval = Long.getLong("hotelchain.syncInterval", 10);
+	private ArrayList<CompletableFuture<Boolean>> pendingCommits = new ArrayList<CompletableFuture<Boolean>>();
+	private Thread syncer;
+
+	/**
+	 * Constructs a new MappedReservationStore handling the file with filename. The file is opened by open().
+	 * @param _filename Name of file.
+	 */
+	public MappedReservationStore(String _filename)
+	{
+		filename = _filename;
+	}
+
+	/**
+	 * Maps the file into memory, creating a new, empty file if it does not exist.
+	 * @return Returns whether the file was successfully opened.
+	 */
+	protected synchronized boolean open()
+	{
+		boolean newFile = new File(filename).length() < HEADER_SIZE;
+		try {
+			file = new RandomAccessFile(filename, "rw");
+			channel = file.getChannel();
+			dictionary = new ArrayList<String>();
+			dictionaryIDs = new HashMap<String, Integer>();
+
+			if(newFile)
+			{
+				map(INITIAL_CAPACITY);
+				buffer.putInt(0, MAGIC);
+				buffer.putShort(4, VERSION);
+				buffer.putInt(8, 0);
+				buffer.putInt(12, 0);
+				IDcounter = 0;
+			}
+			else
+			{
+				map((int) ((file.length() - HEADER_SIZE) / RECORD_SIZE));
+				if(buffer.getInt(0) != MAGIC)
+					throw new IOException("Not a hotelchain reservation store.");
+				if(buffer.getShort(4) > VERSION)
+					throw new IOException("Unsupported file version " + buffer.getShort(4) + ".");
+				IDcounter = buffer.getInt(8);
+				readDictionary();
+			}
+		} catch (IOException e) {
+			System.out.println("There was an error opening the reservation store " + filename);
+			e.printStackTrace();
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a given Reservation to the record of its reservation ID and raises the counter if necessary.
+	 * @param reservation Reservation to be written.
+	 * @return Returns whether the reservation was successfully written.
+	 */
+	protected synchronized boolean put(Reservation reservation)
+	{
+		try {
+			if(reservation.getID() >= capacity)
+				map(Math.max(capacity * 2, reservation.getID() + 1));
+
+			int offset = getOffset(reservation.getID());
+			buffer.put(offset, (byte) 0);
+			buffer.putShort(offset + 2, (short) getDictionaryID(reservation.getHotelName()));
+			buffer.putShort(offset + 4, (short) getDictionaryID(reservation.getRoomType()));
+			buffer.putInt(offset + 8, reservation.getID());
+			buffer.putInt(offset + 12, reservation.getGuestID());
+			buffer.putInt(offset + 16, reservation.getRoomNumber());
+			buffer.putInt(offset + 20, reservation.getStartDay());
+			buffer.putInt(offset + 24, reservation.getEndDay());
+			buffer.putInt(offset + 28, reservation.getNightlyRate());
+			buffer.put(offset, reservation.isCancelled() ? (byte) (PRESENT | CANCELLED) : PRESENT);
+		} catch (IOException e) {
+			System.out.println("There was an error writing the reservation store " + filename);
+			e.printStackTrace();
+			return false;
+		}
+
+		if(reservation.getID() >= IDcounter)
+			setIDcounter(reservation.getID() + 1);
+		return true;
+	}
+
+	/**
+	 * Reads the Reservation with the given reservation ID from its record.
+	 * @param resID Reservation ID.
+	 * @return Returns the Reservation with the given ID. Returns null if there is no such reservation or it was removed.
+	 */
+	protected synchronized Reservation get(int resID)
+	{
+		if(resID < 0 || resID >= capacity)
+			return null;
+
+		int offset = getOffset(resID);
+		byte flags = buffer.get(offset);
+		if((flags & PRESENT) == 0 || (flags & REMOVED) != 0)
+			return null;
+
+		Reservation reservation = new Reservation(buffer.getInt(offset + 12),
+												  dictionary.get(buffer.getShort(offset + 2)),
+												  buffer.getInt(offset + 16),
+												  dictionary.get(buffer.getShort(offset + 4)),
+												  buffer.getInt(offset + 20),
+												  buffer.getInt(offset + 24),
+												  buffer.getInt(offset + 28),
+												  resID);
+		if((flags & CANCELLED) != 0)
+			reservation.cancel();
+		return reservation;
+	}
+
+	/**
+	 * Reads the Reservations that were not removed or cancelled and end after a given day, in order of their reservation ID.
+	 * The records of all other reservations are skipped without reading them.
+	 * @param today Epoch day of the current date.
+	 * @return Returns an ArrayList of the upcoming reservations in this store.
+	 */
+	protected synchronized ArrayList<Reservation> getUpcomingReservations(int today)
+	{
+		ArrayList<Reservation> reservations = new ArrayList<Reservation>();
+		for(int i=0; i<IDcounter && i<capacity; i++)
+		{
+			int offset = getOffset(i);
+			if(buffer.get(offset) == PRESENT && today < buffer.getInt(offset + 24))
+				reservations.add(get(i));
+		}
+		return reservations;
+	}
+
+	/**
+	 * Reads the fields used to index the Reservations that were not removed, without reading the reservations themselves.
+	 * @return Returns the fields of the reservations of each hotel by hotel name, as four arrays in the same order:
+	 * their reservation IDs, guest IDs, end days, and 1 for cancelled reservations or else 0.
+	 */
+	protected synchronized HashMap<String, int[][]> getIndexedFields()
+	{
+		int[] counts = new int[dictionary.size()];
+		for(int i=0; i<IDcounter && i<capacity; i++)
+			if(isStored(i))
+				counts[buffer.getShort(getOffset(i) + 2)]++;
+
+		int[][][] fields = new int[dictionary.size()][][];
+		for(int i=0; i<fields.length; i++)
+			fields[i] = new int[4][counts[i]];
+		int[] sizes = new int[dictionary.size()];
+		for(int i=0; i<IDcounter && i<capacity; i++)
+			if(isStored(i))
+			{
+				int offset = getOffset(i);
+				int hotel = buffer.getShort(offset + 2);
+				fields[hotel][0][sizes[hotel]] = i;
+				fields[hotel][1][sizes[hotel]] = buffer.getInt(offset + 12);
+				fields[hotel][2][sizes[hotel]] = buffer.getInt(offset + 24);
+				fields[hotel][3][sizes[hotel]] = (buffer.get(offset) & CANCELLED) != 0 ? 1 : 0;
+				sizes[hotel]++;
+			}
+
+		HashMap<String, int[][]> fieldsByHotel = new HashMap<String, int[][]>();
+		for(int i=0; i<fields.length; i++)
+			if(counts[i] > 0)
+				fieldsByHotel.put(dictionary.get(i), fields[i]);
+		return fieldsByHotel;
+	}
+
+	/**
+	 * Marks the reservation with the given reservation ID as cancelled by changing the flags of its record in place.
+	 * @param resID Reservation ID.
+	 * @return Returns whether the reservation was found.
+	 */
+	protected synchronized boolean cancel(int resID)
+	{
+		return setFlag(resID, CANCELLED);
+	}
+
+	/**
+	 * Marks the reservation with the given reservation ID as removed, e.g. once it was moved to the archive.
+	 * @param resID Reservation ID.
+	 * @return Returns whether the reservation was found.
+	 */
+	protected synchronized boolean remove(int resID)
+	{
+		return setFlag(resID, REMOVED);
+	}
+
+	/**
+	 * Makes the changes made so far durable according to the durability policy. Changes committed by concurrent
+	 * callers share a single sync, which is done by the syncer thread without holding the lock of this store.
+	 * @return Returns a future that completes with whether the changes were successfully made durable.
+	 */
+	protected synchronized CompletableFuture<Boolean> commit()
+	{
+		if(durability == Journal.OS_BUFFERED)
+			return CompletableFuture.completedFuture(true);
+
+		if(syncer == null)
+		{
+			syncer = new Thread(new Runnable() {
+				public void run()
+				{
+					syncPendingCommits();
+				}
+			}, "Syncer " + filename);
+			syncer.setDaemon(true);
+			syncer.start();
+		}
+
+		CompletableFuture<Boolean> commit = new CompletableFuture<Boolean>();
+		pendingCommits.add(commit);
+		notifyAll();
+		return commit;
+	}
+
+	/**
+	 * Forces the mapped file to disk whenever changes were committed, until the application exits. Runs in the syncer thread.
+	 */
+	private void syncPendingCommits()
+	{
+		long lastSync = 0;
+		while(true)
+		{
+			try {
+				synchronized(this) {
+					while(pendingCommits.isEmpty())
+						wait();
+				}
+				if(durability == Journal.SYNC_BATCHED)
+				{
+					long remaining = lastSync + syncInterval - System.currentTimeMillis();
+					if(remaining > 0)
+						Thread.sleep(remaining);
+				}
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			// Taken after the commits, so the buffer maps every record changed before them, even if the file grew since.
+			ArrayList<CompletableFuture<Boolean>> batch;
+			MappedByteBuffer current;
+			synchronized(this) {
+				batch = pendingCommits;
+				pendingCommits = new ArrayList<CompletableFuture<Boolean>>();
+				current = buffer;
+			}
+
+			boolean forced = true;
+			try {
+				if(current != null)
+					current.force();
+			} catch (RuntimeException e) {
+				System.out.println("There was an error syncing the reservation store " + filename);
+				e.printStackTrace();
+				forced = false;
+			}
+			lastSync = System.currentTimeMillis();
+			for(int i=0; i<batch.size(); i++)
+				batch.get(i).complete(forced);
+		}
+	}
+
+	/**
+	 * Writes all changes made to the mapped file to disk.
+	 */
+	protected synchronized void force()
+	{
+		if(buffer != null)
+			buffer.force();
+	}
+
+	/**
+	 * Writes all changes to disk and closes the file.
+	 */
+	protected synchronized void close()
+	{
+		force();
+		buffer = null;
+		try {
+			if(file != null)
+				file.close();
+		} catch (IOException e) {
+			System.out.println("There was an error closing the reservation store " + filename);
+			e.printStackTrace();
+		}
+		file = null;
+		channel = null;
+	}
+
+	/**
+	 * @return Returns the reservation ID counter stored in this store.
+	 */
+	protected synchronized int getIDcounter()
+	{
+		return IDcounter;
+	}
+
+	/**
+	 * Stores a given reservation ID counter in the header of the file.
+	 * @param _IDcounter Reservation ID counter.
+	 */
+	protected synchronized void setIDcounter(int _IDcounter)
+	{
+		IDcounter = _IDcounter;
+		buffer.putInt(8, IDcounter);
+	}
+
+	/**
+	 * @param resID Reservation ID within the capacity of the file.
+	 * @return Returns whether the record of the given reservation ID holds a reservation that was not removed.
+	 */
+	private boolean isStored(int resID)
+	{
+		byte flags = buffer.get(getOffset(resID));
+		return (flags & PRESENT) != 0 && (flags & REMOVED) == 0;
+	}
+
+	/**
+	 * Sets a given flag in the record of the reservation with the given reservation ID.
+	 * @param resID Reservation ID.
+	 * @param flag Flag to be set.
+	 * @return Returns whether the reservation was found.
+	 */
+	private boolean setFlag(int resID, byte flag)
+	{
+		if(resID < 0 || resID >= capacity)
+			return false;
+
+		int offset = getOffset(resID);
+		byte flags = buffer.get(offset);
+		if((flags & PRESENT) == 0)
+			return false;
+
+		buffer.put(offset, (byte) (flags | flag));
+		return true;
+	}
+
+	/**
+	 * Maps the header and a given number of records into memory, growing the file if necessary.
+	 * @param records Number of records to map.
+	 * @throws IOException if the file could not be mapped.
+	 */
+	private void map(int records) throws IOException
+	{
+		if(buffer != null)
+			buffer.force();
+		long size = HEADER_SIZE + (long) records * RECORD_SIZE;
+		if(size > Integer.MAX_VALUE)
+			throw new IOException("Reservation store " + filename + " is full.");
+
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		capacity = records;
+	}
+
+	/**
+	 * @param resID Reservation ID.
+	 * @return Returns the offset of the record of the given reservation ID.
+	 */
+	private int getOffset(int resID)
+	{
+		return HEADER_SIZE + resID * RECORD_SIZE;
+	}
+
+	/**
+	 * Reads the dictionary of hotel names and room types from the header.
+	 */
+	private void readDictionary()
+	{
+		int size = buffer.getInt(12);
+		int offset = DICTIONARY_OFFSET;
+		for(int i=0; i<size; i++)
+		{
+			byte[] bytes = new byte[buffer.getShort(offset)];
+			ByteBuffer entry = buffer.duplicate();
+			entry.position(offset + 2);
+			entry.get(bytes);
+			offset += 2 + bytes.length;
+
+			String string = new String(bytes, StandardCharsets.UTF_8);
+			dictionaryIDs.put(string, dictionary.size());
+			dictionary.add(string);
+		}
+	}
+
+	/**
+	 * Finds the dictionary ID of a given string, adding it to the dictionary in the header if necessary.
+	 * @param string Hotel name or room type.
+	 * @return Returns the dictionary ID of the given string.
+	 * @throws IOException if the dictionary is full.
+	 */
+	private int getDictionaryID(String string) throws IOException
+	{
+		Integer id = dictionaryIDs.get(string);
+		if(id != null)
+			return id;
+
+		int offset = DICTIONARY_OFFSET;
+		for(int i=0; i<dictionary.size(); i++)
+			offset += 2 + dictionary.get(i).getBytes(StandardCharsets.UTF_8).length;
+
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		if(offset + 2 + bytes.length > HEADER_SIZE)
+			throw new IOException("Dictionary of reservation store " + filename + " is full.");
+
+		buffer.putShort(offset, (short) bytes.length);
+		ByteBuffer entry = buffer.duplicate();
+		entry.position(offset + 2);
+		entry.put(bytes);
+
+		dictionaryIDs.put(string, dictionary.size());
+		dictionary.add(string);
+		buffer.putInt(12, dictionary.size());
+		return dictionary.size() - 1;
+	}
+}
@@ -0,0 +1,117 @@
+package hotelchain;
+
+import java.util.Calendar;
+
+/**
+ * Represents a room of a given type at a Hotel that is available during a requested stay, as found by a search across
+ * the hotels of a HotelChain. If no single room is free for the whole stay, an offer may consist of several legs in 
+ * different rooms of the same type, the guest moving rooms between legs.
+ * Offers are ranked by total price first and number of room moves second.
+ * @author Joost Janssen
+ */
+public class Offer implements Comparable<Offer>
+{
+	private final Hotel hotel;
+	private final String roomType;
+	private final int nightlyRate, nights;
+	private final int[] roomNumbers, legStartDays;
+
+	/**
+	 * Constructs a new Offer.
+	 * @param _hotel Hotel offering the rooms.
+	 * @param _roomType Type of the rooms.
+	 * @param _nightlyRate Nightly rate of the rooms.
+	 * @param _nights Number of nights of the stay.
+	 * @param _roomNumbers Room number of each leg of the stay.
+	 * @param _legStartDays Epoch day of the first night of each leg of the stay.
+	 */
+	public Offer(Hotel _hotel, String _roomType, int _nightlyRate, int _nights, int[] _roomNumbers, int[] _legStartDays)
+	{
+		hotel = _hotel;
+		roomType = _roomType;
+		nightlyRate = _nightlyRate;
+		nights = _nights;
+		roomNumbers = _roomNumbers;
+		legStartDays = _legStartDays;
+	}
+
+	/**
+	 * Ranks this offer before a given offer if it is cheaper, or equally priced with fewer room moves.
+	 * @param other Offer to compare to.
+	 * @return Returns a negative number, zero or a positive number if this offer ranks before, equal to or after the given offer.
+	 */
+	public int compareTo(Offer other)
+	{
+		if(getPrice() != other.getPrice())
+			return getPrice() < other.getPrice() ? -1 : 1;
+		if(getNumberOfMoves() != other.getNumberOfMoves())
+			return getNumberOfMoves() < other.getNumberOfMoves() ? -1 : 1;
+		return hotel.getName().compareTo(other.hotel.getName());
+	}
+
+	/**
+	 * @return Returns the hotel offering the rooms.
+	 */
+	public Hotel getHotel()
+	{
+		return hotel;
+	}
+
+	/**
+	 * @return Returns the type of the rooms offered.
+	 */
+	public String getRoomType()
+	{
+		return roomType;
+	}
+
+	/**
+	 * @return Returns the nightly rate of the rooms offered.
+	 */
+	public int getNightlyRate()
+	{
+		return nightlyRate;
+	}
+
+	/**
+	 * @return Returns the total price of the stay.
+	 */
+	public int getPrice()
+	{
+		return nightlyRate * nights;
+	}
+
+	/**
+	 * @return Returns the number of times the guest has to move to another room during the stay.
+	 */
+	public int getNumberOfMoves()
+	{
+		return roomNumbers.length - 1;
+	}
+
+	/**
+	 * @return Returns the room number of each leg of the stay.
+	 */
+	public int[] getRoomNumbers()
+	{
+		return roomNumbers;
+	}
+
+	/**
+	 * @param leg Index of a leg of the stay.
+	 * @return Returns the date of the first night of the given leg.
+	 */
+	public Calendar getLegStartDate(int leg)
+	{
+		return BinaryCodec.toCalendar(legStartDays[leg]);
+	}
+
+	@Override
+	public String toString()
+	{
+		String rooms = "";
+		for(int i=0; i<roomNumbers.length; i++)
+			rooms = rooms.concat((i == 0 ? "" : ", ") + roomNumbers[i]);
+		return hotel.getName() + ": " + roomType + " at " + nightlyRate + " a night, " + getPrice() + " in total (room " + rooms + ")";
+	}
+}
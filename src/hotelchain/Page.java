@@ -0,0 +1,56 @@
+package hotelchain;
+
+import java.util.ArrayList;
+
+/**
+ * A page of records returned by a paginated listing, together with the cursor to pass to get the next page.
+ * The cursor is the ID of the last record looked at, so pages stay in ID order and no record is skipped or shown twice
+ * when records are added or removed between pages.
+ * @author Joost Janssen
+ * @param <T> Type of records.
+ */
+public class Page<T>
+{
+	public final static int FIRST = -1;	// Cursor of the first page.
+
+	private final ArrayList<T> items;
+	private final int nextCursor;
+	private final boolean more;
+
+	/**
+	 * Constructs a new Page.
+	 * @param _items Records on this page.
+	 * @param _nextCursor Cursor of the next page.
+	 * @param _more Whether there may be records after this page.
+	 */
+	public Page(ArrayList<T> _items, int _nextCursor, boolean _more)
+	{
+		items = _items;
+		nextCursor = _nextCursor;
+		more = _more;
+	}
+
+	/**
+	 * @return Returns the records on this page, in ID order.
+	 */
+	public ArrayList<T> getItems()
+	{
+		return items;
+	}
+
+	/**
+	 * @return Returns the cursor to pass to get the page after this one.
+	 */
+	public int getNextCursor()
+	{
+		return nextCursor;
+	}
+
+	/**
+	 * @return Returns whether there may be records after this page. The next page may still turn out empty if a filter is used.
+	 */
+	public boolean hasMore()
+	{
+		return more;
+	}
+}
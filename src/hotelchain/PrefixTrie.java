@@ -0,0 +1,337 @@
+package hotelchain;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Maps texts to the IDs of the records holding them, and completes a given prefix to the texts held by the most records.
+ * The texts are kept in a radix tree: each node holds the characters of the edge leading to it, and only nodes where
+ * texts branch or end are kept, so there are fewer than two nodes per distinct text. Children are sorted by their first
+ * character and found by binary search.
+ *
+ * Every node also holds the largest number of IDs of any text in its subtree. Completions are found best first from
+ * the node of the prefix, visiting only the nodes that may hold one of the best completions, so finding the top k
+ * completions does not depend on the number of texts starting with the prefix.
+ * Texts are added and removed one at a time, splitting and merging nodes as needed. Keys are matched exactly;
+ * callers normalize them, for example to lower case, and pass the text to display with each key.
+ * Not thread-safe.
+ * @author Joost Janssen
+ */
+public class PrefixTrie
+{
+	private final Node root = new Node("");
+
+	/**
+	 * Adds the ID of a record holding a given text.
+	 * @param key Normalized text.
+	 * @param text Text to display for the key. Only the text passed first is kept.
+	 * @param ID ID of the record.
+	 */
+	protected void add(String key, String text, int ID)
+	{
+		ArrayList<Node> path = new ArrayList<Node>();
+		Node node = root;
+		path.add(node);
+		int i = 0;
+		while(i < key.length())
+		{
+			int position = findChild(node, key.charAt(i));
+			if(position < 0)
+			{
+				Node leaf = new Node(key.substring(i));
+				insertChild(node, -position - 1, leaf);
+				node = leaf;
+				path.add(node);
+				break;
+			}
+
+			Node child = node.children[position];
+			int common = 1;
+			while(common < child.label.length() && i + common < key.length() && child.label.charAt(common) == key.charAt(i + common))
+				common++;
+			if(common < child.label.length())
+			{
+				Node middle = new Node(child.label.substring(0, common));
+				child.label = child.label.substring(common);
+				middle.children = new Node[] { child };
+				middle.maxCount = child.maxCount;
+				node.children[position] = middle;
+				child = middle;
+			}
+			node = child;
+			path.add(node);
+			i += common;
+		}
+
+		if(!node.add(ID))
+			return;
+		if(node.text == null)
+			node.text = text;
+		for(int j=0; j<path.size(); j++)
+			path.get(j).maxCount = Math.max(path.get(j).maxCount, node.count);
+	}
+
+	/**
+	 * Removes the ID of a record holding a given text. Drops the text once no record holds it.
+	 * @param key Normalized text.
+	 * @param ID ID of the record.
+	 * @return Returns whether the ID was found.
+	 */
+	protected boolean remove(String key, int ID)
+	{
+		ArrayList<Node> path = new ArrayList<Node>();
+		Node node = findNode(key, path);
+		if(node == null || !node.remove(ID))
+			return false;
+
+		for(int j=path.size()-1; j>=0; j--)
+		{
+			Node current = path.get(j);
+			if(j > 0 && current.count == 0 && current.children.length <= 1)
+			{
+				Node parent = path.get(j-1);
+				int position = findChild(parent, current.label.charAt(0));
+				if(current.children.length == 0)
+					removeChild(parent, position);
+				else
+				{
+					Node child = current.children[0];
+					child.label = current.label + child.label;
+					parent.children[position] = child;
+				}
+				continue;
+			}
+			current.maxCount = current.count;
+			for(int c=0; c<current.children.length; c++)
+				current.maxCount = Math.max(current.maxCount, current.children[c].maxCount);
+		}
+		return true;
+	}
+
+	/**
+	 * @param key Normalized text.
+	 * @return Returns the IDs of the records holding the given text, in ascending order.
+	 */
+	protected int[] get(String key)
+	{
+		ArrayList<Node> path = new ArrayList<Node>();
+		Node node = findNode(key, path);
+		if(node == null || node.count == 0)
+			return new int[0];
+		return Arrays.copyOf(node.IDs, node.count);
+	}
+
+	/**
+	 * Finds the texts starting with a given prefix that are held by the most records.
+	 * @param prefix Normalized prefix.
+	 * @param k Maximum number of texts.
+	 * @return Returns at most k display texts, starting with the text held by the most records.
+	 */
+	protected ArrayList<String> complete(String prefix, int k)
+	{
+		ArrayList<String> completions = new ArrayList<String>(k);
+		Node node = root;
+		int i = 0;
+		while(i < prefix.length())
+		{
+			int position = findChild(node, prefix.charAt(i));
+			if(position < 0)
+				return completions;
+			node = node.children[position];
+			int length = Math.min(node.label.length(), prefix.length() - i);
+			if(!node.label.regionMatches(0, prefix, i, length))
+				return completions;
+			i += length;
+		}
+
+		// A node is queued with the largest count in its subtree, and again with its own count once it is visited.
+		// As no count in a subtree exceeds that largest count, texts leave the queue in order of count.
+		PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>(16, new Comparator<Candidate>()
+		{
+			public int compare(Candidate c1, Candidate c2)
+			{
+				return Integer.compare(c2.count, c1.count);
+			}
+		});
+		queue.add(new Candidate(node, false, node.maxCount));
+		while(!queue.isEmpty() && completions.size() < k)
+		{
+			Candidate candidate = queue.poll();
+			if(candidate.complete)
+				completions.add(candidate.node.text);
+			else
+			{
+				if(candidate.node.count > 0)
+					queue.add(new Candidate(candidate.node, true, candidate.node.count));
+				for(int c=0; c<candidate.node.children.length; c++)
+					queue.add(new Candidate(candidate.node.children[c], false, candidate.node.children[c].maxCount));
+			}
+		}
+		return completions;
+	}
+
+	/**
+	 * Finds the node of a given text.
+	 * @param key Normalized text.
+	 * @param path List to add the nodes from the root to the node found to.
+	 * @return Returns the node where the given text ends, or null if there is none.
+	 */
+	private Node findNode(String key, ArrayList<Node> path)
+	{
+		Node node = root;
+		path.add(node);
+		int i = 0;
+		while(i < key.length())
+		{
+			int position = findChild(node, key.charAt(i));
+			if(position < 0)
+				return null;
+			node = node.children[position];
+			if(!key.startsWith(node.label, i))
+				return null;
+			path.add(node);
+			i += node.label.length();
+		}
+		return node;
+	}
+
+	/**
+	 * Finds the child of a given node whose edge starts with a given character by binary search.
+	 * @param node Node.
+	 * @param c First character of the edge.
+	 * @return Returns the position of that child, or -(insertion position) - 1 if there is none.
+	 */
+	private static int findChild(Node node, char c)
+	{
+		int low = 0;
+		int high = node.children.length - 1;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			char first = node.children[middle].label.charAt(0);
+			if(first < c)
+				low = middle + 1;
+			else if(first > c)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -low - 1;
+	}
+
+	/**
+	 * Inserts a child at a given position among the children of a given node.
+	 * @param node Node.
+	 * @param position Position of the child.
+	 * @param child Child to be inserted.
+	 */
+	private static void insertChild(Node node, int position, Node child)
+	{
+		Node[] children = new Node[node.children.length + 1];
+		System.arraycopy(node.children, 0, children, 0, position);
+		System.arraycopy(node.children, position, children, position + 1, node.children.length - position);
+		children[position] = child;
+		node.children = children;
+	}
+
+	/**
+	 * Removes the child at a given position among the children of a given node.
+	 * @param node Node.
+	 * @param position Position of the child.
+	 */
+	private static void removeChild(Node node, int position)
+	{
+		Node[] children = new Node[node.children.length - 1];
+		System.arraycopy(node.children, 0, children, 0, position);
+		System.arraycopy(node.children, position + 1, children, position, children.length - position);
+		node.children = children;
+	}
+
+	/**
+	 * A node of the tree, together with the sorted IDs of the records holding the text ending at it, if any.
+	 */
+	private static class Node
+	{
+		private final static Node[] NO_CHILDREN = new Node[0];
+
+		private String label;
+		private Node[] children = NO_CHILDREN;
+		private int[] IDs;
+		private int count;
+		private int maxCount;	// Largest count of any node in the subtree of this node.
+		private String text;
+
+		/**
+		 * Constructs a node without IDs and children.
+		 * @param _label Characters of the edge leading to this node.
+		 */
+		private Node(String _label)
+		{
+			label = _label;
+		}
+
+		/**
+		 * Adds a given ID, unless this node holds it already.
+		 * @param ID ID.
+		 * @return Returns whether the ID was added.
+		 */
+		private boolean add(int ID)
+		{
+			if(IDs == null)
+				IDs = new int[1];
+			int position = Arrays.binarySearch(IDs, 0, count, ID);
+			if(position >= 0)
+				return false;
+			position = -position - 1;
+			if(count == IDs.length)
+				IDs = Arrays.copyOf(IDs, count * 2);
+			System.arraycopy(IDs, position, IDs, position + 1, count - position);
+			IDs[position] = ID;
+			count++;
+			return true;
+		}
+
+		/**
+		 * Removes a given ID. Drops the text once no IDs are left.
+		 * @param ID ID.
+		 * @return Returns whether this node held the ID.
+		 */
+		private boolean remove(int ID)
+		{
+			int position = IDs == null ? -1 : Arrays.binarySearch(IDs, 0, count, ID);
+			if(position < 0)
+				return false;
+			System.arraycopy(IDs, position + 1, IDs, position, count - position - 1);
+			if(--count == 0)
+			{
+				IDs = null;
+				text = null;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * A node to be visited, or a text to be returned, during the search for completions.
+	 */
+	private static class Candidate
+	{
+		private final Node node;
+		private final boolean complete;
+		private final int count;
+
+		/**
+		 * @param _node Node.
+		 * @param _complete Whether the text ending at the node is to be returned, rather than the node visited.
+		 * @param _count Count to order by.
+		 */
+		private Candidate(Node _node, boolean _complete, int _count)
+		{
+			node = _node;
+			complete = _complete;
+			count = _count;
+		}
+	}
+}
@@ -1,4 +1,8 @@
 package hotelchain;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.Calendar;
 
@@ -6,13 +10,21 @@ import java.util.Calendar;
 /**
  * Represents a reservation made at a hotel. Contains information about who made this reservation, when and where.
  * Implements Serializable so instances can be stored using the FileHandler class. 
+ * Dates are kept as epoch days, so comparing dates and counting nights does not create any objects.
+ * Calendars are only created when a date is requested as such.
  * @author Joost Janssen
  */
 public class Reservation implements Serializable
 {
 	private static final long serialVersionUID = -8903154660483910256L;
-	private Calendar startDate, endDate;
-	private final int reservationID, guestID, roomNumber,nightlyRate, totalRate;
+	private static final ObjectStreamField[] serialPersistentFields = {		// Fields as stored by earlier versions.
+		new ObjectStreamField("startDate", Calendar.class), new ObjectStreamField("endDate", Calendar.class),
+		new ObjectStreamField("reservationID", int.class), new ObjectStreamField("guestID", int.class),
+		new ObjectStreamField("roomNumber", int.class), new ObjectStreamField("nightlyRate", int.class),
+		new ObjectStreamField("totalRate", int.class), new ObjectStreamField("hotelName", String.class),
+		new ObjectStreamField("roomType", String.class), new ObjectStreamField("cancelled", boolean.class) };
+	private int startDay, endDay;
+	private int reservationID, guestID, roomNumber,nightlyRate, totalRate;
 	private String hotelName, roomType;
 	private boolean cancelled;
 	
@@ -28,30 +40,75 @@ public class Reservation implements Serializable
 	 * @param resID ID number of this reservation.
 	 */
 	public Reservation(int _guestID, String _hotelName, int _roomNumber, String _roomType, Calendar resStartDate, Calendar resEndDate, int _rate, int resID)
+	{
+		this(_guestID, _hotelName, _roomNumber, _roomType, BinaryCodec.toEpochDay(resStartDate), BinaryCodec.toEpochDay(resEndDate), _rate, resID);
+	}
+	
+	/**
+	 * Constructs a new Reservation with given guest ID number, hotel name, room number and type, start and end days, rate and reservation ID.
+	 * @param _guestID ID number of Guest this reservation was booked by.
+	 * @param _hotelName Name of hotel booked by this reservation.  
+	 * @param _roomNumber Room number of Room booked by this reservation.
+	 * @param _roomType Type of room booked by this reservation.
+	 * @param _startDay Epoch day of the start of this reservation.
+	 * @param _endDay Epoch day of the end of this reservation.
+	 * @param _rate Nightly rate of this reservation.
+	 * @param resID ID number of this reservation.
+	 */
+	public Reservation(int _guestID, String _hotelName, int _roomNumber, String _roomType, int _startDay, int _endDay, int _rate, int resID)
 	{
 		guestID = _guestID;
 		hotelName = _hotelName;
 		roomNumber = _roomNumber;
 		roomType = _roomType;
 		nightlyRate = _rate;
-		startDate = resStartDate;
-		endDate = resEndDate;
+		startDay = _startDay;
+		endDay = _endDay;
 		reservationID = resID;		
 		cancelled = false;	
-		
-		if(startDate.get(Calendar.YEAR) == endDate.get(Calendar.YEAR))
-			totalRate = (endDate.get(Calendar.DAY_OF_YEAR) - startDate.get(Calendar.DAY_OF_YEAR)) * nightlyRate;
-		else
-		{
-			int days = 0;
-			Calendar newStartDate = (Calendar) startDate.clone();
-			while(newStartDate.get(Calendar.YEAR) < endDate.get(Calendar.YEAR))
-			{
-				days += newStartDate.getActualMaximum(Calendar.DAY_OF_YEAR);newStartDate.add(Calendar.YEAR, 1);
-			}
-			days += endDate.get(Calendar.DAY_OF_YEAR) - startDate.get(Calendar.DAY_OF_YEAR);
-			totalRate = days * nightlyRate;
-		}
+		totalRate = (endDay - startDay) * nightlyRate;
+	}
+	
+	/**
+	 * Reads a reservation stored using Java serialization, converting its dates to epoch days.
+	 * @param inputStream Stream to read from.
+	 * @throws IOException if the stream could not be read.
+	 * @throws ClassNotFoundException if a class of a stored object could not be found.
+	 */
+	private void readObject(ObjectInputStream inputStream) throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = inputStream.readFields();
+		startDay = BinaryCodec.toEpochDay((Calendar) fields.get("startDate", null));
+		endDay = BinaryCodec.toEpochDay((Calendar) fields.get("endDate", null));
+		reservationID = fields.get("reservationID", 0);
+		guestID = fields.get("guestID", 0);
+		roomNumber = fields.get("roomNumber", 0);
+		nightlyRate = fields.get("nightlyRate", 0);
+		totalRate = fields.get("totalRate", 0);
+		hotelName = (String) fields.get("hotelName", null);
+		roomType = (String) fields.get("roomType", null);
+		cancelled = fields.get("cancelled", false);
+	}
+	
+	/**
+	 * Writes this reservation using Java serialization in the form used by earlier versions.
+	 * @param outputStream Stream to write to.
+	 * @throws IOException if the stream could not be written.
+	 */
+	private void writeObject(ObjectOutputStream outputStream) throws IOException
+	{
+		ObjectOutputStream.PutField fields = outputStream.putFields();
+		fields.put("startDate", getStartDate());
+		fields.put("endDate", getEndDate());
+		fields.put("reservationID", reservationID);
+		fields.put("guestID", guestID);
+		fields.put("roomNumber", roomNumber);
+		fields.put("nightlyRate", nightlyRate);
+		fields.put("totalRate", totalRate);
+		fields.put("hotelName", hotelName);
+		fields.put("roomType", roomType);
+		fields.put("cancelled", cancelled);
+		outputStream.writeFields();
 	}
 
 	/**
@@ -99,7 +156,7 @@ public class Reservation implements Serializable
 	 */
 	public Calendar getStartDate()
 	{
-		return startDate;
+		return BinaryCodec.toCalendar(startDay);
 	}
 	
 	/**
@@ -107,7 +164,31 @@ public class Reservation implements Serializable
 	 */
 	public Calendar getEndDate()
 	{
-		return endDate;
+		return BinaryCodec.toCalendar(endDay);
+	}
+	
+	/**
+	 * @return Returns the epoch day of the start date of this reservation.
+	 */
+	public int getStartDay()
+	{
+		return startDay;
+	}
+	
+	/**
+	 * @return Returns the epoch day of the end date of this reservation.
+	 */
+	public int getEndDay()
+	{
+		return endDay;
+	}
+	
+	/**
+	 * @return Returns the number of nights of this reservation.
+	 */
+	public int getNumberOfNights()
+	{
+		return endDay - startDay;
 	}
 	
 	/**
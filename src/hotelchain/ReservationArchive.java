@@ -0,0 +1,530 @@
+package hotelchain;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive of past and cancelled Reservations, stored as a set of append-only segment files, one per month of archiving
+ * ("filename.yyyy-MM"). Archiving appends compressed blocks to the segment of the current month only, so it never
+ * reads or rewrites older segments.
+ * Each block is stored as its compressed length followed by a GZIP-compressed list of at most BLOCK_SIZE
+ * Reservations in BinaryCodec format. An archive written by earlier versions as a single file named filename
+ * is left as it is and read as the oldest segment.
+ * Next to each segment, an index file ("filename.yyyy-MM.index") holds a summary of every block: its offset, its range
+ * of reservation IDs and dates, its hotels and its guest IDs. Queries read the indexes and decompress only the
+ * blocks that may contain matching reservations.
+ * @author Joost Janssen
+ */
+public class ReservationArchive
+{
+	private final static int BLOCK_SIZE = 256;		// Maximum number of reservations per compressed block.
+
+	private final String filename;
+	private final SimpleDateFormat segmentFormat = new SimpleDateFormat("yyyy-MM");
+	private final HashSet<String> checkedSegments = new HashSet<String>();
+	private final HashMap<String, ArrayList<BlockSummary>> indexes = new HashMap<String, ArrayList<BlockSummary>>();
+
+	/**
+	 * Constructs a new ReservationArchive handling the segment files starting with filename.
+	 * @param _filename Name of archive, without segment suffix.
+	 */
+	public ReservationArchive(String _filename)
+	{
+		filename = _filename;
+	}
+
+	/**
+	 * Appends a given ArrayList of Reservations to the segment of the month of the given date.
+	 * @param reservations Reservations to be archived.
+	 * @param date Date of archiving.
+	 * @return Returns whether the reservations were successfully archived.
+	 */
+	protected synchronized boolean archive(ArrayList<Reservation> reservations, Calendar date)
+	{
+		if(reservations.isEmpty())
+			return true;
+
+		String segment = getSegmentName(date);
+		RandomAccessFile file = null;
+		boolean failed = false;
+		try {
+			file = new RandomAccessFile(segment, "rw");
+			if(!checkedSegments.contains(segment))
+			{
+				file.setLength(getValidLength(file));
+				checkedSegments.add(segment);
+			}
+			ArrayList<BlockSummary> index = getIndex(segment);
+			file.seek(file.length());
+
+			for(int i=0; i<reservations.size(); i+=BLOCK_SIZE)
+			{
+				ArrayList<Reservation> blockReservations = new ArrayList<Reservation>(reservations.subList(i, Math.min(i + BLOCK_SIZE, reservations.size())));
+				long offset = file.getFilePointer();
+				byte[] block = compress(blockReservations);
+				file.writeInt(block.length);
+				file.write(block);
+
+				BlockSummary summary = new BlockSummary(offset, blockReservations);
+				appendToIndex(segment, summary);
+				index.add(summary);
+			}
+		} catch (IOException e) {
+			System.out.println("There was an error writing the archive " + segment);
+			failed = true;
+			e.printStackTrace();
+		}
+
+		if(file != null)
+			try {
+				file.close();
+			} catch (IOException e) {
+				System.out.println("There was an error writing the archive: Could not close file " + segment);
+				failed = true;
+				e.printStackTrace();
+			}
+		return !failed;
+	}
+
+	/**
+	 * Reads all Reservations of a given segment.
+	 * @param segment Name of segment file, as returned by getSegments().
+	 * @return Returns an ArrayList of the Reservations in the given segment.
+	 */
+	@SuppressWarnings("unchecked")
+	protected ArrayList<Reservation> readSegment(String segment)
+	{
+		if(segment.equals(filename))
+		{
+			ArrayList<Reservation> legacy = (ArrayList<Reservation>) new FileHandler(filename).readFile();
+			if(legacy == null)
+				return new ArrayList<Reservation>();
+			return legacy;
+		}
+
+		ArrayList<Reservation> reservations = new ArrayList<Reservation>();
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(segment, "r");
+			long validLength = getValidLength(file);
+			file.seek(0);
+			while(file.getFilePointer() < validLength)
+			{
+				byte[] block = new byte[file.readInt()];
+				file.readFully(block);
+				reservations.addAll(decompress(block));
+			}
+		} catch (IOException e) {
+			System.out.println("There was an error reading the archive " + segment);
+			e.printStackTrace();
+		}
+
+		if(file != null)
+			try {
+				file.close();
+			} catch (IOException e) {
+				System.out.println("There was an error reading the archive: Could not close file " + segment);
+				e.printStackTrace();
+			}
+		return reservations;
+	}
+
+	/**
+	 * Finds all archived Reservations meeting the criteria of a given query.
+	 * Only decompresses the blocks whose summary shows they may contain matching reservations.
+	 * An archive file written by earlier versions has no index and is read as a whole.
+	 * @param query Criteria of reservations to find.
+	 * @return Returns an ArrayList of the archived reservations meeting the given criteria, oldest segment first.
+	 */
+	protected synchronized ArrayList<Reservation> find(ArchiveQuery query)
+	{
+		ArrayList<Reservation> hits = new ArrayList<Reservation>();
+		ArrayList<String> segments = getSegments();
+		for(int i=0; i<segments.size(); i++)
+		{
+			String segment = segments.get(i);
+			if(segment.equals(filename))
+			{
+				addMatches(readSegment(segment), query, hits);
+				continue;
+			}
+			
+			ArrayList<BlockSummary> index = getIndex(segment);
+			RandomAccessFile file = null;
+			try {
+				for(int j=0; j<index.size(); j++)
+					if(index.get(j).mayContain(query))
+					{
+						if(file == null)
+							file = new RandomAccessFile(segment, "r");
+						addMatches(readBlock(file, index.get(j).offset), query, hits);
+					}
+			} catch (IOException e) {
+				System.out.println("There was an error reading the archive " + segment);
+				e.printStackTrace();
+			}
+			
+			if(file != null)
+				try {
+					file.close();
+				} catch (IOException e) {
+					System.out.println("There was an error reading the archive: Could not close file " + segment);
+					e.printStackTrace();
+				}
+		}
+		return hits;
+	}
+	
+	/**
+	 * Adds the Reservations meeting the criteria of a given query to a given list.
+	 * @param reservations Reservations to check.
+	 * @param query Criteria of reservations to find.
+	 * @param hits ArrayList to add matching reservations to.
+	 */
+	private void addMatches(ArrayList<Reservation> reservations, ArchiveQuery query, ArrayList<Reservation> hits)
+	{
+		for(int i=0; i<reservations.size(); i++)
+			if(query.matches(reservations.get(i)))
+				hits.add(reservations.get(i));
+	}
+	
+	/**
+	 * Reads and decompresses the block at a given offset of a segment file.
+	 * @param file Segment file.
+	 * @param offset Offset of the block.
+	 * @return Returns the Reservations in the block.
+	 * @throws IOException if the block could not be read.
+	 */
+	private ArrayList<Reservation> readBlock(RandomAccessFile file, long offset) throws IOException
+	{
+		file.seek(offset);
+		byte[] block = new byte[file.readInt()];
+		file.readFully(block);
+		return decompress(block);
+	}
+	
+	/**
+	 * Returns the block summaries of a given segment, reading them from its index file if they were not read yet.
+	 * Summaries missing from the index file, e.g. because writing it was interrupted, are recreated from the segment and 
+	 * summaries of blocks no longer in the segment are dropped.
+	 * @param segment Name of segment file.
+	 * @return Returns the summaries of the complete blocks in the given segment.
+	 */
+	private ArrayList<BlockSummary> getIndex(String segment)
+	{
+		ArrayList<BlockSummary> index = indexes.get(segment);
+		if(index != null)
+			return index;
+		
+		index = new ArrayList<BlockSummary>();
+		boolean complete = true;
+		if(new File(segment + ".index").isFile())
+		{
+			DataInputStream inputStream = null;
+			try {
+				inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(segment + ".index")));
+				while(true)
+					index.add(new BlockSummary(inputStream));
+			} catch (EOFException e) {
+				// End of index, or a summary that was only partially written.
+			} catch (IOException e) {
+				System.out.println("There was an error reading the archive index " + segment + ".index");
+				e.printStackTrace();
+			}
+			if(inputStream != null)
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					System.out.println("There was an error reading the archive index: Could not close file " + segment + ".index");
+					e.printStackTrace();
+				}
+		}
+		
+		if(new File(segment).isFile())
+		{
+			RandomAccessFile file = null;
+			try {
+				file = new RandomAccessFile(segment, "r");
+				long validLength = getValidLength(file);
+				long indexed = 0;
+				for(int i=0; i<index.size(); i++)
+					if(index.get(i).offset >= validLength)
+					{
+						index.remove(i--);
+						complete = false;
+					}
+					else
+						indexed = Math.max(indexed, index.get(i).offset + 1);
+				
+				long position = 0;
+				while(position < validLength)
+				{
+					file.seek(position);
+					long next = position + 4 + file.readInt();
+					if(position >= indexed)
+					{
+						index.add(new BlockSummary(position, readBlock(file, position)));
+						complete = false;
+					}
+					position = next;
+				}
+			} catch (IOException e) {
+				System.out.println("There was an error reading the archive " + segment);
+				e.printStackTrace();
+			}
+			if(file != null)
+				try {
+					file.close();
+				} catch (IOException e) {
+					System.out.println("There was an error reading the archive: Could not close file " + segment);
+					e.printStackTrace();
+				}
+		}
+		
+		if(!complete)
+			writeIndex(segment, index);
+		indexes.put(segment, index);
+		return index;
+	}
+	
+	/**
+	 * Appends a given block summary to the index file of a segment.
+	 * @param segment Name of segment file.
+	 * @param summary Summary to be appended.
+	 * @throws IOException if the index file could not be written.
+	 */
+	private void appendToIndex(String segment, BlockSummary summary) throws IOException
+	{
+		DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(segment + ".index", true));
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			summary.write(new DataOutputStream(buffer));
+			buffer.writeTo(outputStream);
+		} finally {
+			outputStream.close();
+		}
+	}
+	
+	/**
+	 * Rewrites the index file of a segment with the given block summaries.
+	 * @param segment Name of segment file.
+	 * @param index Summaries of the blocks in the segment.
+	 */
+	private void writeIndex(String segment, ArrayList<BlockSummary> index)
+	{
+		try {
+			DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(segment + ".index"));
+			try {
+				ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+				for(int i=0; i<index.size(); i++)
+					index.get(i).write(new DataOutputStream(buffer));
+				buffer.writeTo(outputStream);
+			} finally {
+				outputStream.close();
+			}
+		} catch (IOException e) {
+			System.out.println("There was an error writing the archive index " + segment + ".index");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * @return Returns the names of the segment files of this archive, oldest first.
+	 */
+	protected ArrayList<String> getSegments()
+	{
+		ArrayList<String> segments = new ArrayList<String>();
+		File directory = new File(filename).getAbsoluteFile().getParentFile();
+		String prefix = new File(filename).getName() + ".";
+
+		String[] names = directory.list();
+		if(names != null)
+			for(int i=0; i<names.length; i++)
+				if(names[i].startsWith(prefix) && names[i].substring(prefix.length()).matches("\\d{4}-\\d{2}"))
+					segments.add(new File(new File(filename).getParentFile(), names[i]).getPath());
+		Collections.sort(segments);
+
+		if(new File(filename).isFile())
+			segments.add(0, filename);
+		return segments;
+	}
+
+	/**
+	 * @param date Date of archiving.
+	 * @return Returns the name of the segment file of the month of the given date.
+	 */
+	private String getSegmentName(Calendar date)
+	{
+		return filename + "." + segmentFormat.format(date.getTime());
+	}
+
+	/**
+	 * Determines the length of a segment file up to the end of its last complete block,
+	 * reading only the block lengths. Any bytes after that were left by an interrupted write.
+	 * @param file Segment file.
+	 * @return Returns the length of the complete blocks in the given file.
+	 * @throws IOException if the file could not be read.
+	 */
+	private long getValidLength(RandomAccessFile file) throws IOException
+	{
+		long length = file.length();
+		long position = 0;
+		while(position + 4 <= length)
+		{
+			file.seek(position);
+			int blockLength = file.readInt();
+			long next = position + 4 + blockLength;
+			if(blockLength < 0 || next > length)
+				break;
+			position = next;
+		}
+		return position;
+	}
+
+	/**
+	 * Encodes and compresses a block of Reservations.
+	 * @param reservations Reservations to be compressed.
+	 * @return Returns the compressed block.
+	 * @throws IOException if the block could not be encoded.
+	 */
+	private byte[] compress(ArrayList<Reservation> reservations) throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		DataOutputStream outputStream = new DataOutputStream(new GZIPOutputStream(buffer));
+		new BinaryCodec().writeList(outputStream, reservations, reservations.size());
+		outputStream.close();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Decompresses and decodes a block of Reservations.
+	 * @param block Compressed block.
+	 * @return Returns the Reservations in the given block.
+	 * @throws IOException if the block could not be decoded.
+	 */
+	@SuppressWarnings("unchecked")
+	private ArrayList<Reservation> decompress(byte[] block) throws IOException
+	{
+		DataInputStream inputStream = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(block)));
+		ArrayList<Reservation> reservations = (ArrayList<Reservation>) new BinaryCodec().readList(inputStream);
+		inputStream.close();
+		return reservations;
+	}
+
+	/**
+	 * Summary of a block in a segment file: its offset, the range of reservation IDs and dates of its reservations,
+	 * and the hotels and guests they were made for.
+	 */
+	private static class BlockSummary
+	{
+		private final long offset;
+		private int minReservationID = Integer.MAX_VALUE, maxReservationID = Integer.MIN_VALUE;
+		private int minStartDay = Integer.MAX_VALUE, maxEndDay = Integer.MIN_VALUE;
+		private final String[] hotelNames;
+		private final int[] guestIDs;
+		
+		/**
+		 * Constructs the summary of a block of given reservations at a given offset.
+		 * @param _offset Offset of the block in its segment file.
+		 * @param reservations Reservations in the block.
+		 */
+		private BlockSummary(long _offset, ArrayList<Reservation> reservations)
+		{
+			offset = _offset;
+			TreeSet<String> hotels = new TreeSet<String>();
+			TreeSet<Integer> guests = new TreeSet<Integer>();
+			for(int i=0; i<reservations.size(); i++)
+			{
+				Reservation r = reservations.get(i);
+				minReservationID = Math.min(minReservationID, r.getID());
+				maxReservationID = Math.max(maxReservationID, r.getID());
+				minStartDay = Math.min(minStartDay, r.getStartDay());
+				maxEndDay = Math.max(maxEndDay, r.getEndDay());
+				hotels.add(r.getHotelName());
+				guests.add(r.getGuestID());
+			}
+			hotelNames = hotels.toArray(new String[hotels.size()]);
+			guestIDs = new int[guests.size()];
+			int i = 0;
+			for(Integer guestID : guests)
+				guestIDs[i++] = guestID;
+		}
+		
+		/**
+		 * Reads a summary written by write() from a given stream.
+		 * @param inputStream Stream to read from.
+		 * @throws IOException if the stream could not be read.
+		 */
+		private BlockSummary(DataInputStream inputStream) throws IOException
+		{
+			offset = inputStream.readLong();
+			minReservationID = inputStream.readInt();
+			maxReservationID = inputStream.readInt();
+			minStartDay = inputStream.readInt();
+			maxEndDay = inputStream.readInt();
+			hotelNames = new String[inputStream.readShort()];
+			for(int i=0; i<hotelNames.length; i++)
+				hotelNames[i] = inputStream.readUTF();
+			guestIDs = new int[inputStream.readInt()];
+			for(int i=0; i<guestIDs.length; i++)
+				guestIDs[i] = inputStream.readInt();
+		}
+		
+		/**
+		 * Writes this summary to a given stream.
+		 * @param outputStream Stream to write to.
+		 * @throws IOException if the stream could not be written.
+		 */
+		private void write(DataOutputStream outputStream) throws IOException
+		{
+			outputStream.writeLong(offset);
+			outputStream.writeInt(minReservationID);
+			outputStream.writeInt(maxReservationID);
+			outputStream.writeInt(minStartDay);
+			outputStream.writeInt(maxEndDay);
+			outputStream.writeShort(hotelNames.length);
+			for(int i=0; i<hotelNames.length; i++)
+				outputStream.writeUTF(hotelNames[i]);
+			outputStream.writeInt(guestIDs.length);
+			for(int i=0; i<guestIDs.length; i++)
+				outputStream.writeInt(guestIDs[i]);
+		}
+		
+		/**
+		 * Checks whether the block may contain reservations meeting the criteria of a given query.
+		 * @param query Criteria of reservations to find.
+		 * @return Returns false if the block certainly contains no matching reservations.
+		 */
+		private boolean mayContain(ArchiveQuery query)
+		{
+			if(query.getReservationID() != -1 && (query.getReservationID() < minReservationID || query.getReservationID() > maxReservationID))
+				return false;
+			if(minStartDay >= query.getToDay() || maxEndDay <= query.getFromDay())
+				return false;
+			if(query.getGuestID() != -1 && Arrays.binarySearch(guestIDs, query.getGuestID()) < 0)
+				return false;
+			if(query.getHotelName() != null && Arrays.binarySearch(hotelNames, query.getHotelName()) < 0)
+				return false;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package hotelchain;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Keeps Reservations in memory as columns: one primitive array per field, holding the field of every reservation,
+ * instead of one object per reservation. Hotel names and room types are stored as indexes into a dictionary,
+ * cancellations and removals as bits. A reservation takes 28 bytes this way, and scanning all reservations
+ * for a field reads a single contiguous array.
+ *
+ * Rows are kept sorted by reservation ID, so a reservation is found by binary search. Removed rows are only marked
+ * as such, and dropped once they make up half of the rows. Reservation objects are created when a reservation is
+ * requested; changing such an object does not change the columns.
+ * Callers must hold the lock of the ReservationShard holding the columns.
+ * @author Joost Janssen
+ */
+public class ReservationColumns
+{
+	private final static int INITIAL_CAPACITY = 64;
+
+	private int[] reservationIDs, guestIDs, startDays, endDays, roomNumbers, nightlyRates;
+	private short[] hotelNames, roomTypes;
+	private final BitSet cancelled = new BitSet();
+	private final BitSet removed = new BitSet();
+	private int rows, removedRows;
+
+	private final ArrayList<String> dictionary = new ArrayList<String>();
+	private final HashMap<String, Short> dictionaryIDs = new HashMap<String, Short>();
+
+	/**
+	 * Constructs columns holding the given Reservations.
+	 * @param reservations Reservations to be held, in any order.
+	 */
+	public ReservationColumns(ArrayList<Reservation> reservations)
+	{
+		allocate(Math.max(INITIAL_CAPACITY, reservations.size()));
+
+		ArrayList<Reservation> sorted = new ArrayList<Reservation>(reservations);
+		Collections.sort(sorted, new Comparator<Reservation>()
+		{
+			public int compare(Reservation r1, Reservation r2)
+			{
+				return Integer.compare(r1.getID(), r2.getID());
+			}
+		});
+		for(int i=0; i<sorted.size(); i++)
+			add(sorted.get(i));
+	}
+
+	/**
+	 * Adds a given Reservation. Replaces the reservation with the same reservation ID, if there is one.
+	 * @param reservation Reservation to be added.
+	 */
+	protected void add(Reservation reservation)
+	{
+		int row = findRow(reservation.getID());
+		if(row < 0)
+		{
+			row = -row - 1;
+			if(rows == reservationIDs.length)
+				allocate(rows * 2);
+			if(row < rows)
+				shift(row, row + 1, rows - row);
+			removed.clear(row);
+			rows++;
+		}
+		else if(removed.get(row))
+		{
+			removed.clear(row);
+			removedRows--;
+		}
+
+		reservationIDs[row] = reservation.getID();
+		guestIDs[row] = reservation.getGuestID();
+		startDays[row] = reservation.getStartDay();
+		endDays[row] = reservation.getEndDay();
+		roomNumbers[row] = reservation.getRoomNumber();
+		nightlyRates[row] = reservation.getNightlyRate();
+		hotelNames[row] = getDictionaryID(reservation.getHotelName());
+		roomTypes[row] = getDictionaryID(reservation.getRoomType());
+		cancelled.set(row, reservation.isCancelled());
+	}
+
+	/**
+	 * Marks the Reservation with the given reservation ID as cancelled.
+	 * @param resID Reservation ID.
+	 * @return Returns the cancelled Reservation. Returns null if it was not found.
+	 */
+	protected Reservation cancel(int resID)
+	{
+		int row = findRow(resID);
+		if(row < 0 || removed.get(row))
+			return null;
+		cancelled.set(row);
+		return getReservation(row);
+	}
+
+	/**
+	 * Removes the Reservation with the given reservation ID.
+	 * @param resID Reservation ID.
+	 * @return Returns whether the reservation was found.
+	 */
+	protected boolean remove(int resID)
+	{
+		int row = findRow(resID);
+		if(row < 0 || removed.get(row))
+			return false;
+
+		removed.set(row);
+		removedRows++;
+		if(removedRows * 2 >= rows)
+			compact();
+		return true;
+	}
+
+	/**
+	 * @param resID Reservation ID.
+	 * @return Returns the Reservation with the given reservation ID. Returns null if it was not found.
+	 */
+	protected Reservation get(int resID)
+	{
+		int row = findRow(resID);
+		if(row < 0 || removed.get(row))
+			return null;
+		return getReservation(row);
+	}
+
+	/**
+	 * @return Returns a list of all Reservations, sorted by reservation ID.
+	 */
+	protected ArrayList<Reservation> getReservations()
+	{
+		ArrayList<Reservation> reservations = new ArrayList<Reservation>(size());
+		for(int row=0; row<rows; row++)
+			if(!removed.get(row))
+				reservations.add(getReservation(row));
+		return reservations;
+	}
+
+	/**
+	 * @return Returns the reservation IDs of all Reservations in ascending order, and their guest IDs, end days, 
+	 * and 1 if cancelled or else 0, in the same order.
+	 */
+	protected int[][] getIndexedFields()
+	{
+		int[][] fields = new int[4][size()];
+		int i = 0;
+		for(int row=0; row<rows; row++)
+			if(!removed.get(row))
+			{
+				fields[0][i] = reservationIDs[row];
+				fields[1][i] = guestIDs[row];
+				fields[2][i] = endDays[row];
+				fields[3][i++] = cancelled.get(row) ? 1 : 0;
+			}
+		return fields;
+	}
+
+	/**
+	 * @param today Epoch day of the current date.
+	 * @return Returns the Reservations that were not cancelled and end after the given day.
+	 */
+	protected ArrayList<Reservation> getUpcomingReservations(int today)
+	{
+		ArrayList<Reservation> hits = new ArrayList<Reservation>();
+		for(int row=0; row<rows; row++)
+			if(endDays[row] > today && !cancelled.get(row) && !removed.get(row))
+				hits.add(getReservation(row));
+		return hits;
+	}
+
+	/**
+	 * @return Returns the number of Reservations held.
+	 */
+	protected int size()
+	{
+		return rows - removedRows;
+	}
+
+	/**
+	 * Creates the Reservation held in a given row.
+	 * @param row Row of the reservation.
+	 * @return Returns a new Reservation with the fields held in the given row.
+	 */
+	private Reservation getReservation(int row)
+	{
+		Reservation reservation = new Reservation(guestIDs[row], dictionary.get(hotelNames[row]), roomNumbers[row],
+				dictionary.get(roomTypes[row]), startDays[row], endDays[row], nightlyRates[row], reservationIDs[row]);
+		if(cancelled.get(row))
+			reservation.cancel();
+		return reservation;
+	}
+
+	/**
+	 * Finds the row of a given reservation ID by binary search.
+	 * @param resID Reservation ID.
+	 * @return Returns the row holding the given reservation ID, or -(insertion row) - 1 if there is none.
+	 */
+	private int findRow(int resID)
+	{
+		int low = 0;
+		int high = rows - 1;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			if(reservationIDs[middle] < resID)
+				low = middle + 1;
+			else if(reservationIDs[middle] > resID)
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -low - 1;
+	}
+
+	/**
+	 * @param value Hotel name or room type.
+	 * @return Returns the index of the given value in the dictionary, adding it if it is not in there yet.
+	 */
+	private short getDictionaryID(String value)
+	{
+		Short ID = dictionaryIDs.get(value);
+		if(ID == null)
+		{
+			if(dictionary.size() > Short.MAX_VALUE)
+				throw new IllegalStateException("Too many hotel names and room types to store as columns");
+			ID = (short) dictionary.size();
+			dictionary.add(value);
+			dictionaryIDs.put(value, ID);
+		}
+		return ID;
+	}
+
+	/**
+	 * Drops the rows marked as removed, moving the rows after them up.
+	 */
+	private void compact()
+	{
+		int to = 0;
+		for(int row=0; row<rows; row++)
+			if(!removed.get(row))
+			{
+				if(to != row)
+				{
+					shift(row, to, 1);
+					cancelled.set(to, cancelled.get(row));
+				}
+				to++;
+			}
+		cancelled.clear(to, rows);
+		removed.clear();
+		rows = to;
+		removedRows = 0;
+	}
+
+	/**
+	 * Copies a given number of rows to another position in all columns. The cancelled and removed bits are only
+	 * copied when copying rows to a later position.
+	 * @param from First row to be copied.
+	 * @param to Row to copy the first row to.
+	 * @param length Number of rows.
+	 */
+	private void shift(int from, int to, int length)
+	{
+		System.arraycopy(reservationIDs, from, reservationIDs, to, length);
+		System.arraycopy(guestIDs, from, guestIDs, to, length);
+		System.arraycopy(startDays, from, startDays, to, length);
+		System.arraycopy(endDays, from, endDays, to, length);
+		System.arraycopy(roomNumbers, from, roomNumbers, to, length);
+		System.arraycopy(nightlyRates, from, nightlyRates, to, length);
+		System.arraycopy(hotelNames, from, hotelNames, to, length);
+		System.arraycopy(roomTypes, from, roomTypes, to, length);
+		if(to > from)
+			for(int row=from+length-1; row>=from; row--)
+			{
+				cancelled.set(row + to - from, cancelled.get(row));
+				removed.set(row + to - from, removed.get(row));
+			}
+	}
+
+	/**
+	 * Grows all columns to a given number of rows.
+	 * @param capacity Number of rows.
+	 */
+	private void allocate(int capacity)
+	{
+		reservationIDs = grow(reservationIDs, capacity);
+		guestIDs = grow(guestIDs, capacity);
+		startDays = grow(startDays, capacity);
+		endDays = grow(endDays, capacity);
+		roomNumbers = grow(roomNumbers, capacity);
+		nightlyRates = grow(nightlyRates, capacity);
+		short[] grownHotelNames = new short[capacity];
+		short[] grownRoomTypes = new short[capacity];
+		if(hotelNames != null)
+		{
+			System.arraycopy(hotelNames, 0, grownHotelNames, 0, rows);
+			System.arraycopy(roomTypes, 0, grownRoomTypes, 0, rows);
+		}
+		hotelNames = grownHotelNames;
+		roomTypes = grownRoomTypes;
+	}
+
+	/**
+	 * @param column Column to be grown, or null.
+	 * @param capacity Number of rows.
+	 * @return Returns a column of the given number of rows holding the rows of the given column.
+	 */
+	private int[] grow(int[] column, int capacity)
+	{
+		int[] grown = new int[capacity];
+		if(column != null)
+			System.arraycopy(column, 0, grown, 0, rows);
+		return grown;
+	}
+}
@@ -0,0 +1,50 @@
+package hotelchain;
+
+import java.util.Calendar;
+
+/**
+ * Describes which current Reservations to list: those at a hotel, overlapping a range of dates, cancelled or not,
+ * or any combination of these.
+ * @author Joost Janssen
+ */
+public class ReservationFilter
+{
+	public final static int ANY = 0;			// Cancelled and other reservations.
+	public final static int CANCELLED = 1;		// Only cancelled reservations.
+	public final static int NOT_CANCELLED = 2;	// Only reservations that were not cancelled.
+	
+	public final static ReservationFilter ALL = new ReservationFilter(null, null, null, ANY);
+
+	private final String hotelName;
+	private final int fromDay, toDay;
+	private final int cancelled;
+
+	/**
+	 * Constructs a new ReservationFilter. Criteria that are not to be used are given as null or ANY.
+	 * @param _hotelName Name of the hotel of the reservations to list, or null for any hotel.
+	 * @param from Reservations ending after this date are listed, or null for no limit.
+	 * @param to Reservations starting before this date are listed, or null for no limit.
+	 * @param _cancelled ANY, CANCELLED or NOT_CANCELLED.
+	 */
+	public ReservationFilter(String _hotelName, Calendar from, Calendar to, int _cancelled)
+	{
+		hotelName = _hotelName;
+		fromDay = from == null ? Integer.MIN_VALUE : BinaryCodec.toEpochDay(from);
+		toDay = to == null ? Integer.MAX_VALUE : BinaryCodec.toEpochDay(to);
+		cancelled = _cancelled;
+	}
+
+	/**
+	 * Checks whether a given Reservation meets all criteria of this filter.
+	 * @param r Reservation to check.
+	 * @return Returns whether the given reservation is to be listed.
+	 */
+	protected boolean matches(Reservation r)
+	{
+		if(hotelName != null && !hotelName.equals(r.getHotelName()))
+			return false;
+		if((cancelled == CANCELLED && !r.isCancelled()) || (cancelled == NOT_CANCELLED && r.isCancelled()))
+			return false;
+		return r.getStartDay() < toDay && r.getEndDay() > fromDay;
+	}
+}
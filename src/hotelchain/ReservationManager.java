@@ -1,63 +1,446 @@
 package hotelchain;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.text.SimpleDateFormat;
 
 /**
  * Manages the Reservations made at a HotelChain. It contains information about hotels, reservations and the date.
  * Extends the FileHandler class in order to be able to store guest registration information to a file. 
  * The variable filename may be adapted to reflect a desired file name.
+ * The reservations of each hotel are kept in a ReservationShard with its own file and journal. Bookings, cancellations and removals 
+ * only lock and append to the shard of their hotel, its file is only rewritten by periodic snapshots.
+ * Reservations in the single reservations file used by earlier versions are moved to the shards on startup.
+ * Alternatively, reservations are kept in a MappedReservationStore, which is used once the system property
+ * "hotelchain.mappedReservations" was set to true or its file exists. Only its upcoming reservations are read into the shards
+ * on startup, past and cancelled ones are read from the store when needed. Changes are written in place rather than journaled.
+ * The shard of each reservation is indexed by reservation ID and each hotel by name, so finding or cancelling 
+ * a reservation does not go through all shards or hotels. The reservation IDs of each guest are indexed by guest ID,
+ * so finding the reservations of a guest only reads those reservations.
+ * Reservations are also indexed by end date, cancelled reservations before all others, so finding past and cancelled 
+ * reservations does not read any other reservation. A background job moves them to the archive in batches every 
+ * "hotelchain.archiveInterval" minutes (60 by default, 0 to disable), "hotelchain.archiveBatchSize" (500 by default) at a time.
  * @author Joost Janssen
  * TODO Future features: room&pricing editors, check in/out, read archive if desired, better guest removal handling (w/in reservation manager instead of its interface)
  */
 public class ReservationManager extends FileHandler
 {
 	private Hotel[] hotels;
-	private ArrayList<Reservation> reservations;
-	private int reservationIDcounter;
+	private final HashMap<String, Hotel> hotelsByName = new HashMap<String, Hotel>();
+	private final HashMap<String, ReservationShard> shards = new HashMap<String, ReservationShard>();
+	private final IntObjectMap<ReservationShard> shardsByReservationID = new IntObjectMap<ReservationShard>();
+	private final BitSet reservationIDs = new BitSet();	// IDs of the current reservations, guarded by shardsByReservationID.
+	private final IntObjectMap<int[]> reservationIDsByGuest = new IntObjectMap<int[]>();	// Guarded by shardsByReservationID.
+	private final ConcurrentSkipListSet<Long> reservationsByEndDay = new ConcurrentSkipListSet<Long>();	// Keys as returned by getEndDayKey().
+	private ScheduledExecutorService archiver;
+	private volatile boolean archivalStopped;
+	private final Object archiveLock = new Object();	// Held while moving reservations to the archive, so each is archived once.
+	private final AtomicInteger reservationIDcounter = new AtomicInteger();
 	
 	private Calendar currentDate = Calendar.getInstance();	
 	private SimpleDateFormat dateFormat = new SimpleDateFormat("MMMM dd yyyy");
 	
 	private final static String filename = "hotelchain.reservations";
 	private final static String archive_filename = "hotelchain.reservationsArchive";
-	private FileHandler archiveFile;
+	private ReservationArchive archive;
+	private MappedReservationStore mappedStore;
+	
+	private final static String mapped_filename = "hotelchain.reservations.mapped";
+	private final static String mapped_property = "hotelchain.mappedReservations";
+	private final static String migrated_suffix = ".migrated";
+	private final static String archive_interval_property = "hotelchain.archiveInterval";
+	private final static String archive_batch_property = "hotelchain.archiveBatchSize";
+	private final static int CANCELLED_DAY = Integer.MIN_VALUE;	// End day under which cancelled reservations are indexed.
 	
 	/**
 	 * Constructs a new instance of a reservation manager managing reservations at the given Hotels.
 	 * @param _hotels Array of Hotels where this reservation manager is used.
 	 */
-	@SuppressWarnings("unchecked")
 	public ReservationManager(Hotel[] _hotels)
+	{
+		this(CompletableFuture.completedFuture(_hotels), null);
+	}
+	
+	/**
+	 * Constructs a new instance of a reservation manager managing reservations at the given Hotels, which may still be loading.
+	 * Reads the reservations before waiting for the hotels.
+	 * @param _hotels Array of Hotels where this reservation manager is used, once loaded.
+	 * @param executor Executor to load the shards and pass upcoming reservations to the hotels in parallel, or null to handle one hotel at a time.
+	 */
+	protected ReservationManager(CompletableFuture<Hotel[]> _hotels, Executor executor)
 	{
 		super(filename);
-		hotels = _hotels;
 		
-		if(createNewFile())
-			reservations = new ArrayList<Reservation>();
-		else
-			reservations = (ArrayList<Reservation>)readFile();
+		boolean loaded = false;
+		if(Boolean.getBoolean(mapped_property) || new File(mapped_filename).isFile())
+			loaded = openMappedStore(_hotels, executor);
 		
-		reservationIDcounter = getIDcounter();		
-		passUpcomingReservationsToHotels();		
-		archiveFile = new FileHandler(archive_filename);
+		if(!loaded)
+			loadShards(_hotels, executor);
+		
+		hotels = _hotels.join();
+		for(int i=0; i<hotels.length; i++)
+			hotelsByName.put(hotels[i].getName(), hotels[i]);
+		indexReservations();
+		passUpcomingReservationsToHotels(executor);		
+		archive = new ReservationArchive(archive_filename);
+		scheduleArchival();
 	}
 	
 	/**
-	 * Passes information of already existing, upcoming reservations to the respective Hotels.
+	 * Opens the MappedReservationStore and reads the upcoming reservations it contains into the shards. Only indexes 
+	 * its past and cancelled reservations, which the shards read from the store when needed. If the store does not exist yet,
+	 * creates it from the reservation shards and retires their files, so they are not read again. 
+	 * Keeps using the shards if the store could not be opened.
+	 * @param _hotels Hotels of the chain, once loaded.
+	 * @param executor Executor to load the shards in parallel, or null to load one shard at a time.
+	 * @return Returns whether the reservations were loaded, from the store or else from the shards.
+	 */
+	private boolean openMappedStore(CompletableFuture<Hotel[]> _hotels, Executor executor)
+	{
+		boolean importReservations = !new File(mapped_filename).isFile();
+		MappedReservationStore store = new MappedReservationStore(mapped_filename);
+		if(!store.open())
+			return false;
+		
+		if(importReservations)
+		{
+			loadShards(_hotels, executor);
+			ArrayList<Reservation> reservations = getReservations();
+			boolean imported = true;
+			for(int i=0; i<reservations.size(); i++)
+				if(!store.put(reservations.get(i)))
+					imported = false;
+			store.setIDcounter(reservationIDcounter.get());
+			store.force();
+			if(!imported)
+			{
+				System.out.println("There was an error moving the reservations to " + mapped_filename + ", keeping the reservation files");
+				store.close();
+				new File(mapped_filename).delete();
+				return true;
+			}
+			
+			ArrayList<ReservationShard> loaded = getShards();
+			for(int i=0; i<loaded.size(); i++)
+				if(!loaded.get(i).isRefused() && !loaded.get(i).retireFile(migrated_suffix))
+					System.out.println("There was an error retiring the reservations file of hotel " + loaded.get(i).getKey());
+			synchronized(shards)
+			{
+				shards.clear();
+			}
+		}
+		
+		int today = BinaryCodec.toEpochDay(currentDate);
+		HashMap<String, ArrayList<Reservation>> upcomingByShard = new HashMap<String, ArrayList<Reservation>>();
+		ArrayList<Reservation> upcoming = store.getUpcomingReservations(today);
+		for(int i=0; i<upcoming.size(); i++)
+		{
+			String key = ReservationShard.getKey(upcoming.get(i).getHotelName());
+			if(!upcomingByShard.containsKey(key))
+				upcomingByShard.put(key, new ArrayList<Reservation>());
+			upcomingByShard.get(key).add(upcoming.get(i));
+		}
+		
+		HashMap<String, int[][]> fieldsByHotel = store.getIndexedFields();
+		ArrayList<String> hotelNames = new ArrayList<String>(fieldsByHotel.keySet());
+		for(int i=0; i<hotelNames.size(); i++)
+		{
+			String key = ReservationShard.getKey(hotelNames.get(i));
+			ReservationShard shard = getShard(key);
+			int[][] fields = fieldsByHotel.get(hotelNames.get(i));
+			BitSet stored = new BitSet();
+			for(int j=0; j<fields[0].length; j++)
+				if(fields[3][j] == 1 || fields[2][j] <= today)
+				{
+					stored.set(fields[0][j]);
+					index(fields[0][j], fields[1][j], fields[3][j] == 1 ? CANCELLED_DAY : fields[2][j], shard);
+				}
+			ArrayList<Reservation> shardReservations = upcomingByShard.get(key);
+			shard.setReservations(shardReservations == null ? new ArrayList<Reservation>() : shardReservations, store, stored);
+		}
+		reservationIDcounter.set(store.getIDcounter());
+		mappedStore = store;
+		return true;
+	}
+	
+	/**
+	 * Loads the reservation shards of the given hotels and of any other shard files on disk, in parallel if an executor is given.
+	 * Moves the reservations of the single reservations file and its journal to the shards first, if they exist.
+	 * @param _hotels Hotels of the chain, once loaded.
+	 * @param executor Executor to load the shards in parallel, or null to load one shard at a time.
+	 */
+	@SuppressWarnings("unchecked")
+	private void loadShards(CompletableFuture<Hotel[]> _hotels, Executor executor)
+	{
+		ArrayList<JournalEntry> entries = openJournal();
+		if(!createNewFile() || !entries.isEmpty())
+		{
+			ArrayList<Reservation> reservations = createNewFile() ? new ArrayList<Reservation>() : (ArrayList<Reservation>) readFile();
+			migrateToShards(reservations, ReservationShard.replay(reservations, entries, getIDcounter()), executor);
+			return;
+		}
+		
+		ArrayList<String> keys = ReservationShard.getKeysOnDisk();
+		Hotel[] configuredHotels = _hotels.join();
+		for(int i=0; i<configuredHotels.length; i++)
+			if(!keys.contains(ReservationShard.getKey(configuredHotels[i].getName())))
+				keys.add(ReservationShard.getKey(configuredHotels[i].getName()));
+		
+		ArrayList<CompletableFuture<Void>> loaded = new ArrayList<CompletableFuture<Void>>();
+		for(int i=0; i<keys.size(); i++)
+		{
+			final ReservationShard shard = getShard(keys.get(i));
+			if(executor == null)
+				shard.load();
+			else
+				loaded.add(CompletableFuture.runAsync(new Runnable() 
+				{
+					public void run()
+					{
+						shard.load();
+					}
+				}, executor));
+		}
+		for(int i=0; i<loaded.size(); i++)
+			loaded.get(i).join();
+		
+		int counter = 0;
+		for(int i=0; i<keys.size(); i++)
+			counter = Math.max(counter, getShard(keys.get(i)).getReservationIDcounter());
+		reservationIDcounter.set(counter);
+	}
+	
+	/**
+	 * Moves given reservations, read from the single reservations file used by earlier versions, to the shards of their hotels.
+	 * Renames the reservations file once all shards were written, so that it is not read again.
+	 * @param reservations Reservations read from the reservations file and its journal.
+	 * @param counter Reservation ID counter.
+	 * @param executor Executor to write the shards in parallel, or null to write one shard at a time.
 	 */
-	private void passUpcomingReservationsToHotels()
+	private void migrateToShards(ArrayList<Reservation> reservations, int counter, Executor executor)
 	{
+		HashMap<String, ArrayList<Reservation>> reservationsByShard = new HashMap<String, ArrayList<Reservation>>();
 		for(int i=0; i<reservations.size(); i++)
-			if(!reservations.get(i).isCancelled() && currentDate.before(reservations.get(i).getEndDate()))
-				for(int j=0; j<hotels.length; j++)
-					if(hotels[j].getName().equals(reservations.get(i).getHotelName()))
-						hotels[j].addReservation(reservations.get(i));					
+		{
+			String key = ReservationShard.getKey(reservations.get(i).getHotelName());
+			if(!reservationsByShard.containsKey(key))
+				reservationsByShard.put(key, new ArrayList<Reservation>());
+			reservationsByShard.get(key).add(reservations.get(i));
+		}
+		
+		final int _counter = counter;
+		ArrayList<CompletableFuture<Boolean>> written = new ArrayList<CompletableFuture<Boolean>>();
+		ArrayList<String> keys = new ArrayList<String>(reservationsByShard.keySet());
+		for(int i=0; i<keys.size(); i++)
+		{
+			final ReservationShard shard = getShard(keys.get(i));
+			final ArrayList<Reservation> shardReservations = reservationsByShard.get(keys.get(i));
+			if(executor == null)
+				written.add(CompletableFuture.completedFuture(shard.create(shardReservations, _counter)));
+			else
+				written.add(CompletableFuture.supplyAsync(new Supplier<Boolean>() 
+				{
+					public Boolean get()
+					{
+						return shard.create(shardReservations, _counter);
+					}
+				}, executor));
+		}
+		
+		boolean migrated = true;
+		for(int i=0; i<written.size(); i++)
+			if(!written.get(i).join())
+				migrated = false;
+		if(migrated)
+			retireFile(migrated_suffix);
+		else
+			System.out.println("There was an error moving the reservations to their hotels, keeping " + filename);
+		reservationIDcounter.set(counter);
+	}
+	
+	/**
+	 * Returns the shard with the given key, creating an empty one if it does not exist yet.
+	 * @param key Key of the shard, as returned by ReservationShard.getKey().
+	 * @return Returns the ReservationShard with the given key.
+	 */
+	private ReservationShard getShard(String key)
+	{
+		synchronized(shards)
+		{
+			ReservationShard shard = shards.get(key);
+			if(shard == null)
+			{
+				shard = new ReservationShard(key);
+				shards.put(key, shard);
+			}
+			return shard;
+		}
+	}
+	
+	/**
+	 * @return Returns the shards of this reservation manager.
+	 */
+	private ArrayList<ReservationShard> getShards()
+	{
+		synchronized(shards)
+		{
+			return new ArrayList<ReservationShard>(shards.values());
+		}
+	}
+	
+	/**
+	 * @return Returns a list of all current Reservations, gathered from all shards.
+	 */
+	private ArrayList<Reservation> getReservations()
+	{
+		ArrayList<Reservation> reservations = new ArrayList<Reservation>();
+		ArrayList<ReservationShard> allShards = getShards();
+		for(int i=0; i<allShards.size(); i++)
+			reservations.addAll(allShards.get(i).getReservations());
+		return reservations;
+	}
+	
+	/**
+	 * Indexes the shard of each reservation by its reservation ID, its reservation ID by its guest ID, and the reservation by its end day.
+	 */
+	private void indexReservations()
+	{
+		ArrayList<ReservationShard> allShards = getShards();
+		for(int i=0; i<allShards.size(); i++)
+		{
+			int[][] fields = allShards.get(i).getIndexedFields();
+			for(int j=0; j<fields[0].length; j++)
+				index(fields[0][j], fields[1][j], fields[3][j] == 1 ? CANCELLED_DAY : fields[2][j], allShards.get(i));
+		}
+	}
+	
+	/**
+	 * Adds a reservation to the indexes by reservation ID, by guest ID and by end day.
+	 * @param resID Reservation ID.
+	 * @param guestID Guest ID number of the reservation.
+	 * @param endDay Epoch day of the end of the reservation, or CANCELLED_DAY if it was cancelled.
+	 * @param shard Shard holding the reservation.
+	 */
+	private void index(int resID, int guestID, int endDay, ReservationShard shard)
+	{
+		reservationsByEndDay.add(getEndDayKey(endDay, resID));
+		synchronized(shardsByReservationID)
+		{
+			shardsByReservationID.put(resID, shard);
+			reservationIDs.set(resID);
+			
+			int[] guestReservations = reservationIDsByGuest.get(guestID);
+			if(guestReservations == null)
+				guestReservations = new int[0];
+			for(int i=0; i<guestReservations.length; i++)
+				if(guestReservations[i] == resID)
+					return;
+			int[] added = new int[guestReservations.length + 1];
+			System.arraycopy(guestReservations, 0, added, 0, guestReservations.length);
+			added[guestReservations.length] = resID;
+			reservationIDsByGuest.put(guestID, added);
+		}
+	}
+	
+	/**
+	 * Removes a reservation from the indexes by reservation ID, by guest ID and by end day.
+	 * @param resID Reservation ID.
+	 * @param guestID Guest ID number of the reservation.
+	 * @param endDay Epoch day of the end of the reservation.
+	 */
+	private void unindex(int resID, int guestID, int endDay)
+	{
+		reservationsByEndDay.remove(getEndDayKey(endDay, resID));
+		reservationsByEndDay.remove(getEndDayKey(CANCELLED_DAY, resID));
+		synchronized(shardsByReservationID)
+		{
+			shardsByReservationID.remove(resID);
+			reservationIDs.clear(resID);
+			
+			int[] guestReservations = reservationIDsByGuest.get(guestID);
+			if(guestReservations == null)
+				return;
+			int[] remaining = new int[guestReservations.length];
+			int size = 0;
+			for(int i=0; i<guestReservations.length; i++)
+				if(guestReservations[i] != resID)
+					remaining[size++] = guestReservations[i];
+			if(size == 0)
+				reservationIDsByGuest.remove(guestID);
+			else if(size < guestReservations.length)
+				reservationIDsByGuest.put(guestID, Arrays.copyOf(remaining, size));
+		}
+	}
+	
+	/**
+	 * @param endDay Epoch day of the end of a reservation, or CANCELLED_DAY.
+	 * @param resID Reservation ID.
+	 * @return Returns the key of the reservation in the index by end day, which orders reservations by end day and then by ID.
+	 */
+	private static long getEndDayKey(int endDay, int resID)
+	{
+		return ((long) endDay << 32) | (resID & 0xffffffffL);
+	}
+	
+	/**
+	 * @param hotelName Name of a Hotel.
+	 * @return Returns the Hotel with the given name. Returns null if this reservation manager does not manage it.
+	 */
+	private Hotel getHotel(String hotelName)
+	{
+		return hotelsByName.get(hotelName);
+	}
+	
+	/**
+	 * Passes information of already existing, upcoming reservations to the respective Hotels.
+	 * Each hotel receives the upcoming reservations of its shard.
+	 * @param executor Executor to pass the reservations to the hotels in parallel, or null to pass them one hotel at a time.
+	 */
+	private void passUpcomingReservationsToHotels(Executor executor)
+	{
+		ArrayList<CompletableFuture<Void>> passed = new ArrayList<CompletableFuture<Void>>();
+		for(int j=0; j<hotels.length; j++)
+		{
+			final Hotel hotel = hotels[j];
+			final ReservationShard shard = getShard(ReservationShard.getKey(hotel.getName()));
+			Runnable pass = new Runnable() 
+			{
+				public void run()
+				{
+					ArrayList<Reservation> reservations = shard.getUpcomingReservations(BinaryCodec.toEpochDay(currentDate));
+					ArrayList<Reservation> upcoming = new ArrayList<Reservation>();
+					for(int i=0; i<reservations.size(); i++)
+						if(hotel.getName().equals(reservations.get(i).getHotelName()))
+							upcoming.add(reservations.get(i));
+					hotel.addReservations(upcoming);
+				}
+			};
+			if(executor == null)
+				pass.run();
+			else
+				passed.add(CompletableFuture.runAsync(pass, executor));
+		}
+		for(int j=0; j<passed.size(); j++)
+			passed.get(j).join();
 	}
 
 	/**
-	 * Reserve a room for a guest at a hotel at a certain time. Returns the resulting Reservation.
+	 * Reserve a room for a guest at a hotel at a certain time. Returns the resulting Reservation once it is durable.
 	 * @param resGuest Guest reserving a room.
 	 * @param resHotel Reserved Hotel. 
 	 * @param roomType Type of Room.
@@ -67,62 +450,274 @@ public class ReservationManager extends FileHandler
 	 */
 	protected Reservation reserveRoom(Guest resGuest, Hotel resHotel, String roomType, Calendar resStartDate, Calendar resEndDate)
 	{
-		Reservation	reservation = resHotel.reserveRoom(resGuest, resStartDate, resEndDate, roomType, reservationIDcounter);
-		if(reservation != null)
-		{ 
-			reservations.add(reservation);
-			reservationIDcounter++;
+		return reserveRoomAsync(resGuest, resHotel, roomType, resStartDate, resEndDate).join();
+	}
+	
+	/**
+	 * Reserve a room for a guest at a hotel at a certain time without waiting until the reservation is durable.
+	 * Only locks the shard of the given hotel. Reservations made by concurrent callers are written to disk together.
+	 * @param resGuest Guest reserving a room.
+	 * @param resHotel Reserved Hotel. 
+	 * @param roomType Type of Room.
+	 * @param resStartDate Start date of reservation.
+	 * @param resEndDate End date of reservation.
+	 * @return Returns a future that completes with the resulting reservation once it is durable. 
+	 * Completes with null if desired reservation could not be made.
+	 */
+	protected CompletableFuture<Reservation> reserveRoomAsync(Guest resGuest, Hotel resHotel, String roomType, Calendar resStartDate, Calendar resEndDate)
+	{
+		return reserveRoomAsync(resGuest, resHotel, roomType, BinaryCodec.toEpochDay(resStartDate), BinaryCodec.toEpochDay(resEndDate));
+	}
+	
+	/**
+	 * Reserve a room for a guest at a hotel during the nights between two epoch days without waiting until the reservation is durable.
+	 * @param resGuest Guest reserving a room.
+	 * @param resHotel Reserved Hotel. 
+	 * @param roomType Type of Room.
+	 * @param startDay Epoch day of the start of the reservation.
+	 * @param endDay Epoch day of the end of the reservation.
+	 * @return Returns a future that completes with the resulting reservation once it is durable. 
+	 * Completes with null if desired reservation could not be made.
+	 */
+	protected CompletableFuture<Reservation> reserveRoomAsync(Guest resGuest, Hotel resHotel, String roomType, int startDay, int endDay)
+	{
+		final Reservation reservation;
+		CompletableFuture<Boolean> commit;
+		ReservationShard shard = getShard(ReservationShard.getKey(resHotel.getName()));
+		synchronized(shard) 
+		{
+			reservation = resHotel.reserveRoom(resGuest, startDay, endDay, roomType, reservationIDcounter.get());
+			if(reservation == null)
+				return CompletableFuture.completedFuture(null);
 			
-			if(writeFile(reservations, reservationIDcounter))
-				return reservation;
+			if(!reservationIDcounter.compareAndSet(reservation.getID(), reservation.getID() + 1))
+			{
+				// The ID was taken by a booking at another hotel in the meantime, book again with a fresh ID.
+				resHotel.cancelReservation(reservation);
+				return reserveRoomAsync(resGuest, resHotel, roomType, startDay, endDay);
+			}
+			shard.add(reservation);
+			index(reservation.getID(), reservation.getGuestID(), reservation.getEndDay(), shard);
+			commit = recordChange(shard, new JournalEntry(JournalEntry.RESERVE, reservation.getID(), reservation));
 		}
-		return null;
+		return commit.thenApply(new Function<Boolean, Reservation>() {
+			public Reservation apply(Boolean durable)
+			{
+				return durable ? reservation : null;
+			}
+		});
 	}	
 	
 	/**
-	 * Cancels a given Reservation.
+	 * Cancels a given Reservation and waits until the cancellation is durable.
 	 * @param reservation Reservation to be cancelled.
 	 */
 	protected void cancelReservation(Reservation reservation)
 	{
-		for(int i=0;i<reservations.size();i++)
-			if(reservation.getID() == reservations.get(i).getID())
+		cancelReservationAsync(reservation).join();
+	}
+	
+	/**
+	 * Cancels a given Reservation without waiting until the cancellation is durable.
+	 * @param reservation Reservation to be cancelled.
+	 * @return Returns a future that completes with whether the reservation was cancelled, once the cancellation is durable.
+	 */
+	protected CompletableFuture<Boolean> cancelReservationAsync(Reservation reservation)
+	{
+		CompletableFuture<Boolean> commit = CompletableFuture.completedFuture(false);
+		ReservationShard shard = getShard(ReservationShard.getKey(reservation.getHotelName()));
+		synchronized(shard) 
+		{
+			Reservation cancelled = shard.cancel(reservation.getID());
+			if(cancelled != null)
+			{
+				Hotel hotel = getHotel(cancelled.getHotelName());
+				if(hotel != null)
+					hotel.cancelReservation(cancelled);
+				if(reservationsByEndDay.remove(getEndDayKey(cancelled.getEndDay(), cancelled.getID())))
+					reservationsByEndDay.add(getEndDayKey(CANCELLED_DAY, cancelled.getID()));
+				
+				commit = recordChange(shard, new JournalEntry(JournalEntry.CANCEL, reservation.getID(), null));
+			}
+		}
+		return commit;
+	}
+	
+	/**
+	 * Moves all Reservations booked by a given guest to another guest, e.g. when merging duplicate guests, and waits
+	 * until the changes are durable. Each moved reservation is recorded as booked again under the other guest ID, 
+	 * so replaying the journal replaces the original reservation.
+	 * @param fromGuestID Guest ID number of the guest whose reservations are moved.
+	 * @param toGuestID Guest ID number of the guest the reservations are moved to.
+	 * @return Returns the number of reservations moved, or -1 if any change could not be written.
+	 */
+	protected int reassignReservations(int fromGuestID, int toGuestID)
+	{
+		ArrayList<Reservation> booked = findReservationID(fromGuestID);
+		ArrayList<CompletableFuture<Boolean>> commits = new ArrayList<CompletableFuture<Boolean>>();
+		for(int i=0; i<booked.size(); i++)
+		{
+			ReservationShard shard = getShard(ReservationShard.getKey(booked.get(i).getHotelName()));
+			synchronized(shard) 
 			{
-				reservations.get(i).cancel();
-				for(int j=0; j<hotels.length; j++)
-					if(hotels[j].getName().equals(reservations.get(i).getHotelName()))
-						hotels[j].cancelReservation(reservations.get(i));
+				Reservation current = shard.get(booked.get(i).getID());
+				if(current == null || current.getGuestID() != fromGuestID)
+					continue;
 				
-				writeFile(reservations, reservationIDcounter);					
+				Reservation moved = new Reservation(toGuestID, current.getHotelName(), current.getRoomNumber(), current.getRoomType(), 
+						current.getStartDay(), current.getEndDay(), current.getNightlyRate(), current.getID());
+				if(current.isCancelled())
+					moved.cancel();
+				
+				Hotel hotel = getHotel(current.getHotelName());
+				if(hotel != null && !current.isCancelled() && hotel.cancelReservation(current))
+					hotel.addReservation(moved);
+				shard.add(moved);
+				unindex(current.getID(), fromGuestID, current.getEndDay());
+				index(moved.getID(), toGuestID, moved.isCancelled() ? CANCELLED_DAY : moved.getEndDay(), shard);
+				commits.add(recordChange(shard, new JournalEntry(JournalEntry.RESERVE, moved.getID(), moved)));
 			}
+		}
+		
+		for(int i=0; i<commits.size(); i++)
+			if(!commits.get(i).join())
+				return -1;
+		return commits.size();
+	}
+	
+	/**
+	 * Finds offers for a stay at a given Hotel while holding the lock of its shard, so that no reservation is made 
+	 * or cancelled at the hotel during the search.
+	 * @param hotel Hotel to search.
+	 * @param startDay Epoch day of arrival.
+	 * @param endDay Epoch day of departure.
+	 * @param minBeds Minimum number of beds.
+	 * @param maxRate Maximum nightly rate, or -1 for any rate.
+	 * @return Returns the Offers of the given hotel.
+	 */
+	protected ArrayList<Offer> findOffers(Hotel hotel, int startDay, int endDay, int minBeds, int maxRate)
+	{
+		ReservationShard shard = getShard(ReservationShard.getKey(hotel.getName()));
+		synchronized(shard)
+		{
+			return hotel.findOffers(startDay, endDay, minBeds, maxRate);
+		}
+	}
+	
+	/**
+	 * Returns the number of rooms of a given type available each night at a given Hotel while holding the lock of its shard, 
+	 * so that no reservation is made or cancelled at the hotel while the nights are counted.
+	 * @param hotel Hotel.
+	 * @param roomType Type of room.
+	 * @param startDate Date of the first night.
+	 * @param endDate Date after the last night.
+	 * @return Returns the number of available rooms for each night from the start date up to the end date.
+	 */
+	protected int[] getAvailability(Hotel hotel, String roomType, Calendar startDate, Calendar endDate)
+	{
+		ReservationShard shard = getShard(ReservationShard.getKey(hotel.getName()));
+		synchronized(shard)
+		{
+			return hotel.getAvailability(roomType, BinaryCodec.toEpochDay(startDate), BinaryCodec.toEpochDay(endDate));
+		}
+	}
+	
+	/**
+	 * Records a given change in the MappedReservationStore if one is used, or else in the journal of the given shard.
+	 * Must be called while holding the lock of the shard.
+	 * @param shard Shard of the hotel of the changed reservation.
+	 * @param entry Change to be recorded.
+	 * @return Returns a future that completes with whether the change was successfully recorded, once it is durable.
+	 */
+	private CompletableFuture<Boolean> recordChange(ReservationShard shard, JournalEntry entry)
+	{
+		if(mappedStore == null)
+			return shard.record(entry, reservationIDcounter.get());
+		
+		boolean recorded;
+		if(entry.getType() == JournalEntry.RESERVE)
+			recorded = mappedStore.put((Reservation) entry.getPayload());
+		else if(entry.getType() == JournalEntry.CANCEL)
+			recorded = mappedStore.cancel(entry.getID());
+		else
+			recorded = mappedStore.remove(entry.getID());
+		return recorded ? mappedStore.commit() : CompletableFuture.completedFuture(false);
 	}
 		
 	/**
-	 * Returns the Reservation with the given reservation ID.
+	 * Returns the Reservation with the given reservation ID from the shard indexed for the ID. 
+	 * If a MappedReservationStore is used, past and cancelled reservations are read from their records.
 	 * @param resID Reservation ID.
 	 * @return Returns the Reservation with given reservation ID. Returns null if no reservation was found.
 	 */
 	protected Reservation getReservation(int resID)
 	{
-		for(int i=0; i<reservations.size();i++)
-			if(reservations.get(i).getID() == resID)
-				return reservations.get(i);
+		ReservationShard shard;
+		synchronized(shardsByReservationID)
+		{
+			shard = shardsByReservationID.get(resID);
+		}
+		return shard == null ? null : shard.get(resID);
+	}
+	
+	/**
+	 * Lists the current Reservations meeting a given filter a page at a time, in order of reservation ID.
+	 * Only looks at the reservations after the cursor until the page is full, skipping the IDs of archived reservations 
+	 * 64 at a time, so listing all reservations takes time proportional to the page size per page.
+	 * @param filter Criteria of the reservations to list.
+	 * @param cursor Page.FIRST, or the cursor returned with the previous page.
+	 * @param pageSize Maximum number of reservations on the page.
+	 * @return Returns the Page of reservations after the given cursor.
+	 */
+	protected Page<Reservation> getReservationPage(ReservationFilter filter, int cursor, int pageSize)
+	{
+		ArrayList<Reservation> page = new ArrayList<Reservation>(pageSize);
+		int resID = cursor;
+		while(page.size() < pageSize)
+		{
+			int next;
+			synchronized(shardsByReservationID)
+			{
+				next = reservationIDs.nextSetBit(resID + 1);
+			}
+			if(next < 0)
+				return new Page<Reservation>(page, resID, false);
+			
+			resID = next;
+			Reservation reservation = getReservation(resID);
+			if(reservation != null && filter.matches(reservation))
+				page.add(reservation);
+		}
 		
-		return null;
+		synchronized(shardsByReservationID)
+		{
+			return new Page<Reservation>(page, resID, reservationIDs.nextSetBit(resID + 1) >= 0);
+		}
 	}
 	
 	/**
-	 * Finds the ID number of the reservation made by the Guest with the given guest ID.
+	 * Finds the reservations made by the Guest with the given guest ID, using the reservation IDs indexed for the guest.
 	 * @param guestID Guest ID number.
-	 * @return Returns the ID number of the reservation made by the Guest with given guestID. Returns -1 if no reservation was found.
+	 * @return Returns the reservations made by the Guest with given guestID. Returns an empty list if no reservation was found.
 	 */
 	protected ArrayList<Reservation> findReservationID(int guestID)
 	{
 		ArrayList<Reservation> hits = new ArrayList<Reservation>();
 		if(guestID>-1)
-			for(int i=0; i<reservations.size(); i++)
-				if(reservations.get(i).getGuestID() == guestID)
-					hits.add(reservations.get(i));
+		{
+			int[] guestReservations;
+			synchronized(shardsByReservationID)
+			{
+				guestReservations = reservationIDsByGuest.get(guestID);
+			}
+			if(guestReservations != null)
+				for(int i=0; i<guestReservations.length; i++)
+				{
+					Reservation reservation = getReservation(guestReservations[i]);
+					if(reservation != null)
+						hits.add(reservation);
+				}
+		}
 		
 		return hits;
 	}
@@ -131,46 +726,183 @@ public class ReservationManager extends FileHandler
 	 * @return Returns an ArrayList of Reservations that where either cancelled or whose end date is before the current date.
 	 */
 	protected ArrayList<Reservation> getPastAndCancelledReservations()
+	{
+		return getPastAndCancelledReservations(BinaryCodec.toEpochDay(currentDate), Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Finds the Reservations that were cancelled or ended on or before a given day, reading only those from the index by end day.
+	 * @param today Epoch day of the current date.
+	 * @param limit Maximum number of reservations to return.
+	 * @return Returns an ArrayList of at most limit cancelled and past Reservations, cancelled reservations first and then by end date.
+	 */
+	private ArrayList<Reservation> getPastAndCancelledReservations(int today, int limit)
 	{
 		ArrayList<Reservation> pastReservations = new ArrayList<Reservation>();
-		for(int i=0; i<reservations.size(); i++)
-			if(reservations.get(i).isCancelled() || reservations.get(i).getEndDate().before(currentDate))
-				pastReservations.add(reservations.get(i));
-		
+		for(Long key : reservationsByEndDay.headSet(getEndDayKey(today + 1, 0)))
+		{
+			if(pastReservations.size() >= limit)
+				break;
+			Reservation reservation = getReservation((int) key.longValue());
+			if(reservation != null)
+				pastReservations.add(reservation);
+		}
 		return pastReservations;
 	}
 	
 	/**
-	 * Moves a given ArrayList of Reservations the archive by removing its Reservations from the list of current reservations. Writes archive to file.
+	 * Moves a given ArrayList of Reservations the archive by removing its Reservations from the list of current reservations. 
+	 * Appends them to the archive segment of the current month before removing them, so a failure in between leaves
+	 * a reservation archived twice rather than not at all. Reservations that were already removed, e.g. by the
+	 * background archival job, are not archived again.
 	 * @param oldReservations ArrayList of Reservations to be moved to archive.
 	 * @return Returns whether the given ArrayList was successfully moved to archive.
 	 */
-	@SuppressWarnings("unchecked")
 	protected boolean moveReservationsToArchive(ArrayList<Reservation> oldReservations)
 	{
-		for(int i=0; i<oldReservations.size();i++)
-			reservations.remove(oldReservations.get(i));
-		if(!writeFile(reservations, reservationIDcounter))
-			return false;
-		
-		ArrayList<Reservation> archive = (ArrayList<Reservation>)archiveFile.readFile();
-		if(archive != null)
-			archive.addAll(oldReservations);
-		else
-			archive = oldReservations;
-		
-		if(archiveFile.writeFile(archive, archive.size()))
+		synchronized(archiveLock)
+		{
+			ArrayList<Reservation> present = new ArrayList<Reservation>();
+			for(int i=0; i<oldReservations.size();i++)
+			{
+				Reservation reservation = getShard(ReservationShard.getKey(oldReservations.get(i).getHotelName())).get(oldReservations.get(i).getID());
+				if(reservation != null)
+					present.add(reservation);
+			}
+			if(present.isEmpty())
+				return true;
+			if(!archive.archive(present, Calendar.getInstance()))
+				return false;
+			
+			ArrayList<CompletableFuture<Boolean>> commits = new ArrayList<CompletableFuture<Boolean>>();
+			for(int i=0; i<present.size();i++)
+			{
+				ReservationShard shard = getShard(ReservationShard.getKey(present.get(i).getHotelName()));
+				synchronized(shard)
+				{
+					if(shard.remove(present.get(i).getID()))
+					{
+						unindex(present.get(i).getID(), present.get(i).getGuestID(), present.get(i).getEndDay());
+						commits.add(recordChange(shard, new JournalEntry(JournalEntry.REMOVE, present.get(i).getID(), null)));
+					}
+				}
+			}
+			for(int i=0; i<commits.size(); i++)
+				if(!waitForCommit(commits.get(i)))
+					return false;
 			return true;
-		
-		return false;		
+		}
 	}	
 	
+	/**
+	 * Starts the background job moving past and cancelled reservations to the archive every "hotelchain.archiveInterval" minutes, 
+	 * unless the interval is 0. The first run starts right away. The job is stopped by close().
+	 */
+	private void scheduleArchival()
+	{
+		long interval = Long.getLong(archive_interval_property, 60);
+		if(interval <= 0)
+			return;
+		
+		archiver = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() 
+		{
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "hotelchain-archiver");
+				thread.setDaemon(true);
+				thread.setPriority(Thread.MIN_PRIORITY);
+				return thread;
+			}
+		});
+		archiver.scheduleWithFixedDelay(new Runnable() 
+		{
+			public void run()
+			{
+				try {
+					archivePastAndCancelledReservations();
+				} catch (RuntimeException e) {
+					System.out.println("There was an error moving past reservations to the archive");
+					e.printStackTrace();
+				}
+			}
+		}, 0, interval, TimeUnit.MINUTES);
+	}
+	
+	/**
+	 * Stops the background archival job and writes all recorded changes, e.g. when the application exits: 
+	 * waits until the journals of all shards have written the changes still queued, or forces the MappedReservationStore to disk.
+	 */
+	protected void close()
+	{
+		stopArchival();
+		ArrayList<ReservationShard> allShards = getShards();
+		for(int i=0; i<allShards.size(); i++)
+			allShards.get(i).closeJournal();
+		closeJournal();
+		if(mappedStore != null)
+			mappedStore.force();
+	}
+	
+	/**
+	 * Stops the background archival job. A run in progress finishes its current batch, which is waited for, 
+	 * so the archive and the journals agree when the application exits.
+	 */
+	protected void stopArchival()
+	{
+		if(archiver == null)
+			return;
+		archivalStopped = true;
+		archiver.shutdown();
+		try {
+			if(!archiver.awaitTermination(1, TimeUnit.MINUTES))
+				System.out.println("The archival job did not finish its current batch in time");
+		} catch (InterruptedException e) {
+			System.out.println("Interrupted while waiting for the archival job to finish");
+			e.printStackTrace();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Moves all reservations that were cancelled or ended on or before today to the archive, in batches of 
+	 * "hotelchain.archiveBatchSize" reservations. The locks of the shards are released between batches, 
+	 * so bookings are not held up for longer than a single batch. Stops between batches once archival is stopped.
+	 * @return Returns the number of reservations moved to the archive.
+	 */
+	protected int archivePastAndCancelledReservations()
+	{
+		int batchSize = Math.max(1, Integer.getInteger(archive_batch_property, 500));
+		int today = BinaryCodec.toEpochDay(Calendar.getInstance());
+		int archived = 0;
+		while(!archivalStopped)
+		{
+			ArrayList<Reservation> batch = getPastAndCancelledReservations(today, batchSize);
+			int before = getNumberOfReservations();
+			if(batch.isEmpty() || !moveReservationsToArchive(batch) || getNumberOfReservations() == before)
+				return archived;
+			archived += batch.size();
+			if(batch.size() < batchSize)
+				return archived;
+		}
+		return archived;
+	}
+	
+	/**
+	 * Finds archived Reservations meeting the criteria of a given query without reading the whole archive.
+	 * @param query Criteria of reservations to find.
+	 * @return Returns an ArrayList of the archived reservations meeting the given criteria.
+	 */
+	protected ArrayList<Reservation> findArchivedReservations(ArchiveQuery query)
+	{
+		return archive.find(query);
+	}
+	
 	/**
 	 * @return Returns the current state of the reservation ID counter.
 	 */
 	protected int getReservationIDcounter()
 	{
-		return reservationIDcounter;
+		return reservationIDcounter.get();
 	}
 	
 	/**
@@ -178,7 +910,11 @@ public class ReservationManager extends FileHandler
 	 */
 	protected int getNumberOfReservations()
 	{
-		return reservations.size();
+		int numberOfReservations = 0;
+		ArrayList<ReservationShard> allShards = getShards();
+		for(int i=0; i<allShards.size(); i++)
+			numberOfReservations += allShards.get(i).size();
+		return numberOfReservations;
 	}
 		
 	/**
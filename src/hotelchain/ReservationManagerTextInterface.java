@@ -57,7 +57,7 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 		int choice = getUserChoice(1, options.length);		
 		switch(choice)
 		{
-			case 1: displayReservationsInformation(); break;
+			case 1: displayReservationsInformation(ReservationFilter.ALL); break;
 			case 2: showReserveRoom(); break;
 			case 3: showFindReservation(true); break;
 			case 4: showCancelReservation(); break;
@@ -67,9 +67,10 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 	}
 	
 	/**
-	 * Displays the Reservations Information screen of this interface.
+	 * Displays the Reservations Information screen of this interface, PAGE_SIZE reservations at a time.
+	 * @param filter Criteria of the reservations to display.
 	 */
-	private void displayReservationsInformation()
+	private void displayReservationsInformation(ReservationFilter filter)
 	{
 		printHeader("All Reservations");
 		if(reservationManager.getNumberOfReservations() > 0)
@@ -77,18 +78,22 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 		else
 			print("  | # of reservations: " + reservationManager.getNumberOfReservations());
 		
-		for(int i=0; i<reservationManager.getReservationIDcounter(); i++)
+		Page<Reservation> page = reservationManager.getReservationPage(filter, Page.FIRST, PAGE_SIZE);
+		while(true)
 		{
-			Reservation r = reservationManager.getReservation(i);						
-			if(r!=null)
+			for(int i=0; i<page.getItems().size(); i++)
 			{
+				Reservation r = page.getItems().get(i);
 				printSingleLine();
 				printReservation(r);
 				if(r.isCancelled())
 					print("! This reservation was CANCELLED.");
-			}
-		}		
-		printDoubleLine();
+			}		
+			printDoubleLine();
+			if(!page.hasMore() || !promptNextPage())
+				return;
+			page = reservationManager.getReservationPage(filter, page.getNextCursor(), PAGE_SIZE);
+		}
 	}
 	
 	/**
@@ -112,7 +117,7 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 			displayGuestsInformation();
 			
 			System.out.println("> Please enter ID of guest to book a room for: ");
-			int guestID = getUserChoice(0, guestRegistration.getIDcounter());
+			int guestID = getUserChoice(0, guestRegistration.getGuestIDcounter());
 			Guest guest = guestRegistration.getGuest(guestID);
 			
 			Hotel chosenHotel = null;
@@ -180,9 +185,9 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 				reservationID = showFindReservation(false);
 			else if(choice==2)
 			{
-				displayReservationsInformation();				
+				displayReservationsInformation(new ReservationFilter(null, null, null, ReservationFilter.NOT_CANCELLED));				
 				System.out.println("> Please enter ID of reservation to be cancelled: ");
-				reservationID = getUserChoice(0, reservationManager.getIDcounter());
+				reservationID = getUserChoice(0, reservationManager.getReservationIDcounter());
 			}
 			else
 				return;
@@ -237,8 +242,7 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 			switch(choice)
 			{
 				case 1: 
-					System.out.println("> Enter name: ");
-					String nameEntered = getUserInput();
+					String nameEntered = promptNameOrCity(false);
 					if(!nameEntered.isEmpty())
 					{
 						int guestIDfound = showFindGuestID(nameEntered, true);
@@ -252,7 +256,7 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 					break;
 				case 2:
 					System.out.println("> Enter reservation ID: ");
-					reservationID = getUserChoice(0, reservationManager.getIDcounter());
+					reservationID = getUserChoice(0, reservationManager.getReservationIDcounter());
 					if(reservationID == -1)
 					{
 						showFindReservation(printResult);
@@ -434,13 +438,12 @@ public class ReservationManagerTextInterface extends GuestRegistrationTextInterf
 	/**
 	 * Checks whether there are currently no reservations booked by guests who were removed from the system. 
 	 * Moves any reservations that are booked by a removed guest to the relative archive.
+	 * Looks up every guest ID ever issued once, so this takes time linear in the number of guest IDs.
 	 */
 	private void checkForRemovedGuests()
 	{
-		int ctr = 0;
-		if(removedGuestIDs.size()>0)
-			ctr = removedGuestIDs.get(removedGuestIDs.size()-1);
-		for(int i=ctr; i<guestRegistration.getGuestIDcounter(); i++)
+		removedGuestIDs.clear();
+		for(int i=0; i<guestRegistration.getGuestIDcounter(); i++)
 			if (guestRegistration.getGuest(i) == null)
 				removedGuestIDs.add(i);	
 		for(int i=0; i<removedGuestIDs.size(); i++)
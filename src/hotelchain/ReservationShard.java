@@ -0,0 +1,388 @@
+package hotelchain;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Holds the Reservations made at a single hotel of a HotelChain, stored in a file and journal of their own.
+ * A change to the reservations of one hotel therefore only appends to and rewrites the files of that hotel,
+ * and shards of different hotels can be changed, written and loaded in parallel.
+ * Callers must hold the lock of a shard while changing its reservations and recording the change.
+ * The reservations are kept in memory in an IntObjectMap by reservation ID, so finding, cancelling and removing a reservation 
+ * takes constant time. If the system property "hotelchain.columnarReservations" is set to true, they are kept as 
+ * ReservationColumns instead. The files are the same either way.
+ * A shard whose reservations are kept in a MappedReservationStore only holds its upcoming reservations in memory. 
+ * Of its other reservations it only knows the IDs, and reads them from the store when they are asked for.
+ * The file of a shard is named after the exact name of its hotel, percent-encoded, so no two hotels share a file.
+ * A shard whose file holds reservations of another hotel is not loaded, and changes to it are refused.
+ * @author Joost Janssen
+ */
+public class ReservationShard extends FileHandler
+{
+	private final static String prefix = "hotelchain.reservations.shard.";
+	private final static String columnar_property = "hotelchain.columnarReservations";
+	private final static char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	private final String key;
+	private IntObjectMap<Reservation> reservations = new IntObjectMap<Reservation>();
+	private ReservationColumns columns;	// Holds the reservations instead of the map, if columnar reservations are used.
+	private MappedReservationStore mappedStore;	// Holds the reservations of this shard, if a MappedReservationStore is used.
+	private BitSet stored = new BitSet();	// IDs of the reservations of this shard that are only held by the store.
+	private int reservationIDcounter;
+	private boolean journaled;
+	private boolean refused;	// Whether the file of this shard holds reservations of another hotel.
+
+	/**
+	 * Constructs a new ReservationShard for the hotel with the given key. Its reservations are read by load().
+	 * @param _key Key of the hotel, as returned by getKey().
+	 */
+	public ReservationShard(String _key)
+	{
+		super(getFilename(_key));
+		key = _key;
+	}
+
+	/**
+	 * Reads the reservations of this shard from its file and applies the changes recorded in its journal since.
+	 * Starts writing a snapshot of the resulting reservations if any changes were replayed.
+	 * Keeps this shard empty and refuses changes to it if any reservation read belongs to a hotel with another key.
+	 */
+	@SuppressWarnings("unchecked")
+	protected synchronized void load()
+	{
+		ArrayList<Reservation> loaded = new ArrayList<Reservation>();
+		if(!createNewFile())
+			loaded = (ArrayList<Reservation>) readFile();
+
+		ArrayList<JournalEntry> entries = openJournal();
+		journaled = true;
+		reservationIDcounter = replay(loaded, entries, getIDcounter());
+		for(int i=0; i<loaded.size(); i++)
+			if(!getKey(loaded.get(i).getHotelName()).equals(key))
+			{
+				System.out.println("The reservations file " + prefix + key + " holds reservations of hotel " + loaded.get(i).getHotelName() 
+						+ ", not loading it");
+				refused = true;
+				store(new ArrayList<Reservation>());
+				return;
+			}
+		if(!entries.isEmpty())
+			writeSnapshot(loaded, reservationIDcounter);
+		store(loaded);
+	}
+
+	/**
+	 * Replaces the reservations of this shard by the given ones and writes them to its file, e.g. when moving
+	 * reservations from a single reservations file to shards.
+	 * @param _reservations Reservations of this shard.
+	 * @param _reservationIDcounter Reservation ID counter of the hotel chain.
+	 * @return Returns whether the reservations were successfully written.
+	 */
+	protected synchronized boolean create(ArrayList<Reservation> _reservations, int _reservationIDcounter)
+	{
+		reservationIDcounter = _reservationIDcounter;
+		boolean written = writeFile(_reservations, reservationIDcounter);
+		openJournal();
+		journaled = true;
+		store(_reservations);
+		return written;
+	}
+
+	/**
+	 * Replaces the reservations of this shard by the given ones held in memory and the given ones only held by a MappedReservationStore,
+	 * without using its file or journal.
+	 * @param _reservations Reservations of this shard to be held in memory.
+	 * @param _store Store holding all reservations of this shard.
+	 * @param _stored IDs of the reservations of this shard that are only held by the store.
+	 */
+	protected synchronized void setReservations(ArrayList<Reservation> _reservations, MappedReservationStore _store, BitSet _stored)
+	{
+		store(_reservations);
+		mappedStore = _store;
+		stored = _stored;
+	}
+
+	/**
+	 * Keeps a given list of reservations as the reservations of this shard, in ReservationColumns if columnar
+	 * reservations are used or else in the map by reservation ID.
+	 * @param _reservations Reservations of this shard.
+	 */
+	private void store(ArrayList<Reservation> _reservations)
+	{
+		if(Boolean.getBoolean(columnar_property))
+		{
+			columns = new ReservationColumns(_reservations);
+			reservations = null;
+			return;
+		}
+
+		reservations = new IntObjectMap<Reservation>();
+		for(int i=0; i<_reservations.size(); i++)
+			reservations.put(_reservations.get(i).getID(), _reservations.get(i));
+	}
+
+	/**
+	 * Appends a given change to the journal of this shard, if it has one. Must be called holding the lock of this shard.
+	 * @param entry Change to be appended.
+	 * @param _reservationIDcounter Current reservation ID counter of the hotel chain.
+	 * @return Returns a future that completes with whether the change was successfully recorded, once it is durable.
+	 * Completes with false if the file of this shard holds reservations of another hotel.
+	 */
+	protected CompletableFuture<Boolean> record(JournalEntry entry, int _reservationIDcounter)
+	{
+		if(refused)
+			return CompletableFuture.completedFuture(false);
+		reservationIDcounter = Math.max(reservationIDcounter, _reservationIDcounter);
+		if(!journaled)
+			return CompletableFuture.completedFuture(true);
+
+		CompletableFuture<Boolean> commit = appendToJournal(entry);
+		if(isSnapshotDue())
+			writeSnapshot(getReservations(), reservationIDcounter);
+		return commit;
+	}
+
+	/**
+	 * Adds a given Reservation to this shard.
+	 * @param reservation Reservation to be added.
+	 */
+	protected synchronized void add(Reservation reservation)
+	{
+		stored.clear(reservation.getID());
+		if(columns != null)
+			columns.add(reservation);
+		else
+			reservations.put(reservation.getID(), reservation);
+	}
+
+	/**
+	 * Cancels the Reservation with the given reservation ID in this shard. A reservation only held by the store is read from it,
+	 * the change to its record is left to the caller recording the cancellation.
+	 * @param resID Reservation ID.
+	 * @return Returns the cancelled Reservation. Returns null if it is not in this shard.
+	 */
+	protected synchronized Reservation cancel(int resID)
+	{
+		if(columns != null && !stored.get(resID))
+			return columns.cancel(resID);
+
+		Reservation reservation = get(resID);
+		if(reservation != null)
+			reservation.cancel();
+		return reservation;
+	}
+
+	/**
+	 * Removes the Reservation with the given reservation ID from this shard.
+	 * @param resID Reservation ID.
+	 * @return Returns whether the reservation was found.
+	 */
+	protected synchronized boolean remove(int resID)
+	{
+		if(stored.get(resID))
+		{
+			stored.clear(resID);
+			return true;
+		}
+		if(columns != null)
+			return columns.remove(resID);
+		return reservations.remove(resID) != null;
+	}
+
+	/**
+	 * @param resID Reservation ID.
+	 * @return Returns the Reservation with the given reservation ID, read from the store if it is not held in memory. 
+	 * Returns null if it is not in this shard.
+	 */
+	protected synchronized Reservation get(int resID)
+	{
+		if(stored.get(resID))
+			return mappedStore.get(resID);
+		if(columns != null)
+			return columns.get(resID);
+		return reservations.get(resID);
+	}
+
+	/**
+	 * @return Returns a list of the Reservations in this shard held in memory.
+	 */
+	protected synchronized ArrayList<Reservation> getReservations()
+	{
+		if(columns != null)
+			return columns.getReservations();
+		return reservations.values();
+	}
+
+	/**
+	 * @return Returns the fields of the Reservations in this shard held in memory used to index them, as four arrays in the same order: 
+	 * their reservation IDs, guest IDs, end days, and 1 for cancelled reservations or else 0.
+	 */
+	protected synchronized int[][] getIndexedFields()
+	{
+		if(columns != null)
+			return columns.getIndexedFields();
+
+		ArrayList<Reservation> all = reservations.values();
+		int[][] fields = new int[4][all.size()];
+		for(int i=0; i<all.size(); i++)
+		{
+			fields[0][i] = all.get(i).getID();
+			fields[1][i] = all.get(i).getGuestID();
+			fields[2][i] = all.get(i).getEndDay();
+			fields[3][i] = all.get(i).isCancelled() ? 1 : 0;
+		}
+		return fields;
+	}
+
+	/**
+	 * @param today Epoch day of the current date.
+	 * @return Returns the Reservations in this shard that were not cancelled and end after the given day.
+	 */
+	protected synchronized ArrayList<Reservation> getUpcomingReservations(int today)
+	{
+		if(columns != null)
+			return columns.getUpcomingReservations(today);
+
+		ArrayList<Reservation> all = reservations.values();
+		ArrayList<Reservation> hits = new ArrayList<Reservation>();
+		for(int i=0; i<all.size(); i++)
+			if(!all.get(i).isCancelled() && today < all.get(i).getEndDay())
+				hits.add(all.get(i));
+		return hits;
+	}
+
+	/**
+	 * @return Returns the number of Reservations in this shard.
+	 */
+	protected synchronized int size()
+	{
+		if(columns != null)
+			return columns.size() + stored.cardinality();
+		return reservations.size() + stored.cardinality();
+	}
+
+	/**
+	 * @return Returns the reservation ID counter read from the file and journal of this shard.
+	 */
+	protected synchronized int getReservationIDcounter()
+	{
+		return reservationIDcounter;
+	}
+
+	/**
+	 * @return Returns whether the file of this shard holds reservations of another hotel, so it was not loaded.
+	 */
+	protected synchronized boolean isRefused()
+	{
+		return refused;
+	}
+
+	/**
+	 * @return Returns the key of the hotel of this shard.
+	 */
+	protected String getKey()
+	{
+		return key;
+	}
+
+	/**
+	 * Derives the key of the shard of a hotel from its name by percent-encoding the UTF-8 bytes of all characters other
+	 * than letters, digits, '_' and '-'. Different names, such as "Hotel A" and "Hotel_A", therefore have different keys.
+	 * @param hotelName Name of a Hotel.
+	 * @return Returns the key of the shard holding the reservations of the given hotel.
+	 */
+	protected static String getKey(String hotelName)
+	{
+		byte[] bytes = hotelName.getBytes(StandardCharsets.UTF_8);
+		StringBuilder key = new StringBuilder(bytes.length);
+		for(int i=0; i<bytes.length; i++)
+		{
+			int b = bytes[i] & 0xFF;
+			if((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_' || b == '-')
+				key.append((char) b);
+			else
+				key.append('%').append(HEX[b >> 4]).append(HEX[b & 15]);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @param _key Key of a hotel, as returned by getKey().
+	 * @return Returns the name of the file holding the reservations of the hotel with the given key.
+	 */
+	protected static String getFilename(String _key)
+	{
+		return prefix + _key;
+	}
+
+	/**
+	 * @return Returns the keys of the shards that have a file on disk.
+	 */
+	protected static ArrayList<String> getKeysOnDisk()
+	{
+		ArrayList<String> keys = new ArrayList<String>();
+		File directory = new File(prefix).getAbsoluteFile().getParentFile();
+		String name = new File(prefix).getName();
+
+		String[] names = directory.list();
+		if(names != null)
+			for(int i=0; i<names.length; i++)
+				if(names[i].startsWith(name) && names[i].indexOf('.', name.length()) == -1)
+					keys.add(names[i].substring(name.length()));
+		return keys;
+	}
+
+	/**
+	 * Applies the changes recorded in given journal entries to a given list of Reservations.
+	 * @param reservations Reservations the entries are applied to.
+	 * @param entries Journal entries, in the order in which they were appended.
+	 * @param _reservationIDcounter Reservation ID counter stored with the reservations.
+	 * @return Returns the reservation ID counter after the changes.
+	 */
+	protected static int replay(ArrayList<Reservation> reservations, ArrayList<JournalEntry> entries, int _reservationIDcounter)
+	{
+		int counter = _reservationIDcounter;
+		for(int i=0; i<reservations.size(); i++)
+			if(reservations.get(i).getID() >= counter)
+				counter = reservations.get(i).getID() + 1;
+		if(entries.isEmpty())
+			return counter;
+
+		HashMap<Integer, Reservation> reservationsByID = new HashMap<Integer, Reservation>();
+		for(int i=0; i<reservations.size(); i++)
+			reservationsByID.put(reservations.get(i).getID(), reservations.get(i));
+
+		for(int i=0; i<entries.size(); i++)
+		{
+			JournalEntry entry = entries.get(i);
+			if(entry.getType() == JournalEntry.RESERVE)
+				reservationsByID.put(entry.getID(), (Reservation) entry.getPayload());
+			else if(entry.getType() == JournalEntry.CANCEL && reservationsByID.containsKey(entry.getID()))
+				reservationsByID.get(entry.getID()).cancel();
+			else if(entry.getType() == JournalEntry.REMOVE)
+				reservationsByID.remove(entry.getID());
+
+			if(entry.getID() >= counter)
+				counter = entry.getID() + 1;
+		}
+
+		ArrayList<Reservation> replayed = new ArrayList<Reservation>();
+		for(int i=0; i<reservations.size(); i++)
+		{
+			Reservation reservation = reservationsByID.remove(reservations.get(i).getID());
+			if(reservation != null)
+				replayed.add(reservation);
+		}
+		for(int i=0; i<entries.size(); i++)
+			if(entries.get(i).getType() == JournalEntry.RESERVE && reservationsByID.containsKey(entries.get(i).getID()))
+				replayed.add(reservationsByID.remove(entries.get(i).getID()));
+
+		reservations.clear();
+		reservations.addAll(replayed);
+		return counter;
+	}
+}
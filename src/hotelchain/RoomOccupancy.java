@@ -0,0 +1,295 @@
+package hotelchain;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the nights a single Room is reserved, as a bitmap with one bit per day.
+ * The bitmap is a ring of HORIZON days starting at firstDay, so checking whether the room is free during a stay
+ * within the ring takes a single AND operation per 64 nights.
+ * The reservations themselves are kept in a map sorted by start day, together with the length of the longest stay.
+ * Any reservation overlapping a range of days therefore starts within that range or at most that length before it,
+ * so finding the reservations overlapping a range, or occupying a day, takes logarithmic time plus the number of 
+ * reservations starting in that window. Stays outside the ring are checked against this map.
+ * A reservation occupies the nights from its start date up to, but not including, its end date, so a reservation
+ * ending on its start date occupies no nights, and an empty range of days overlaps no reservation.
+ * @author Joost Janssen
+ */
+public class RoomOccupancy
+{
+	protected final static int HORIZON = 4096;	// Number of days covered by the ring, a multiple of 64.
+
+	private final long[] days = new long[HORIZON / 64];
+	private int firstDay;
+	private final TreeMap<Integer, ArrayList<Stay>> stays = new TreeMap<Integer, ArrayList<Stay>>();
+	private int longestStay = 0;	// Upper bound of the number of nights of any stay in the map.
+
+	/**
+	 * Constructs the occupancy of a room without reservations, covering HORIZON days from the given day.
+	 * @param _firstDay Epoch day of the first day covered.
+	 */
+	public RoomOccupancy(int _firstDay)
+	{
+		firstDay = _firstDay;
+	}
+
+	/**
+	 * Marks the nights of a given Reservation of this room as occupied.
+	 * @param reservation Reservation to be added.
+	 */
+	protected void add(Reservation reservation)
+	{
+		Stay stay = new Stay(reservation);
+		ArrayList<Stay> staysOnDay = stays.get(stay.startDay);
+		if(staysOnDay == null)
+		{
+			staysOnDay = new ArrayList<Stay>(1);
+			stays.put(stay.startDay, staysOnDay);
+		}
+		staysOnDay.add(stay);
+		longestStay = Math.max(longestStay, stay.endDay - stay.startDay);
+		mark(stay, firstDay, firstDay + HORIZON);
+	}
+
+	/**
+	 * Marks the nights of a given Reservation of this room as free again, unless another reservation occupies them.
+	 * @param reservation Reservation to be removed.
+	 */
+	protected void remove(Reservation reservation)
+	{
+		Stay stay = new Stay(reservation);
+		ArrayList<Stay> staysOnDay = stays.get(stay.startDay);
+		if(staysOnDay == null)
+			return;
+		
+		boolean removed = false;
+		for(int i=0; i<staysOnDay.size() && !removed; i++)
+			if(staysOnDay.get(i).reservation == reservation)
+			{
+				staysOnDay.remove(i);
+				removed = true;
+			}
+		if(!removed)
+			return;
+		if(staysOnDay.isEmpty())
+			stays.remove(stay.startDay);
+
+		int start = Math.max(stay.startDay, firstDay);
+		int end = Math.min(stay.endDay, firstDay + HORIZON);
+		if(start >= end)
+			return;
+
+		update(start, end, false);
+		ArrayList<Stay> overlapping = getStaysBetween(start, end);
+		for(int i=0; i<overlapping.size(); i++)
+			mark(overlapping.get(i), start, end);
+	}
+
+	/**
+	 * Checks whether this room is free during all nights from a given start day up to a given end day.
+	 * @param startDay Epoch day of arrival.
+	 * @param endDay Epoch day of departure.
+	 * @return Returns whether no reservation of this room occupies any of the given nights.
+	 */
+	protected boolean isFreeBetween(int startDay, int endDay)
+	{
+		if(endDay <= startDay)
+			return true;
+		if(startDay < firstDay || endDay > firstDay + HORIZON)
+			return getStaysBetween(startDay, endDay).isEmpty();
+
+		for(int day = startDay; day < endDay; )
+		{
+			int bit = Math.floorMod(day, HORIZON);
+			int nights = Math.min(64 - (bit & 63), endDay - day);
+			if((days[bit >>> 6] & getMask(bit, nights)) != 0)
+				return false;
+			day += nights;
+		}
+		return true;
+	}
+
+	/**
+	 * Moves the start of the ring forward to a given day. The bits of the days that drop out of the ring
+	 * are reused for the days added at its end.
+	 * @param day Epoch day of the new first day covered.
+	 */
+	protected void advanceTo(int day)
+	{
+		if(day <= firstDay)
+			return;
+
+		int previousEnd = firstDay + HORIZON;
+		if(day - firstDay >= HORIZON)
+			for(int i=0; i<days.length; i++)
+				days[i] = 0;
+		else
+			update(firstDay, day, false);
+
+		firstDay = day;
+		int from = Math.max(previousEnd, firstDay);
+		ArrayList<Stay> added = getStaysBetween(from, firstDay + HORIZON);
+		for(int i=0; i<added.size(); i++)
+			mark(added.get(i), from, firstDay + HORIZON);
+	}
+	
+	/**
+	 * Finds the reservations of this room occupying any of the nights from a given start day up to a given end day.
+	 * @param startDay Epoch day of the first night.
+	 * @param endDay Epoch day after the last night.
+	 * @return Returns the overlapping Reservations, sorted by start date.
+	 */
+	protected ArrayList<Reservation> getReservationsBetween(int startDay, int endDay)
+	{
+		ArrayList<Stay> overlapping = getStaysBetween(startDay, endDay);
+		ArrayList<Reservation> reservations = new ArrayList<Reservation>(overlapping.size());
+		for(int i=0; i<overlapping.size(); i++)
+			reservations.add(overlapping.get(i).reservation);
+		return reservations;
+	}
+	
+	/**
+	 * Finds a reservation of this room by its start day and reservation ID, including reservations without nights.
+	 * @param startDay Epoch day of the start of the reservation.
+	 * @param resID Reservation ID.
+	 * @return Returns the Reservation, or null if this room has no such reservation.
+	 */
+	protected Reservation get(int startDay, int resID)
+	{
+		ArrayList<Stay> staysOnDay = stays.get(startDay);
+		if(staysOnDay != null)
+			for(int i=0; i<staysOnDay.size(); i++)
+				if(staysOnDay.get(i).reservation.getID() == resID)
+					return staysOnDay.get(i).reservation;
+		return null;
+	}
+	
+	/**
+	 * Finds the reservations of this room occupying the night of a given day.
+	 * @param day Epoch day.
+	 * @return Returns the Reservations occupying the given night. Usually there is at most one.
+	 */
+	protected ArrayList<Reservation> getReservationsOn(int day)
+	{
+		return getReservationsBetween(day, day + 1);
+	}
+	
+	/**
+	 * Finds the first day from a given day on at which this room is free for a given number of nights.
+	 * @param fromDay Epoch day of the earliest arrival.
+	 * @param nights Number of nights.
+	 * @return Returns the epoch day of the first possible arrival.
+	 */
+	protected int getNextFreeDay(int fromDay, int nights)
+	{
+		int day = fromDay;
+		while(true)
+		{
+			ArrayList<Stay> overlapping = getStaysBetween(day, day + nights);
+			if(overlapping.isEmpty())
+				return day;
+			for(int i=0; i<overlapping.size(); i++)
+				day = Math.max(day, overlapping.get(i).endDay);
+		}
+	}
+	
+	/**
+	 * Finds the first occupied night of this room from a given day on, looking no further than a given day.
+	 * @param fromDay Epoch day of the first night.
+	 * @param toDay Epoch day after the last night to look at.
+	 * @return Returns the epoch day of the first occupied night, or toDay if the room is free all nights in between.
+	 */
+	protected int getFreeUntil(int fromDay, int toDay)
+	{
+		ArrayList<Stay> overlapping = getStaysBetween(fromDay, toDay);
+		int day = toDay;
+		for(int i=0; i<overlapping.size(); i++)
+			day = Math.min(day, Math.max(overlapping.get(i).startDay, fromDay));
+		return day;
+	}
+	
+	/**
+	 * Finds the stays occupying any of the nights within a given range. Only looks at stays starting within the range
+	 * or at most longestStay nights before it.
+	 * @param startDay Epoch day of the first night of the range.
+	 * @param endDay Epoch day after the last night of the range.
+	 * @return Returns the overlapping stays, sorted by start day.
+	 */
+	private ArrayList<Stay> getStaysBetween(int startDay, int endDay)
+	{
+		ArrayList<Stay> overlapping = new ArrayList<Stay>();
+		if(endDay <= startDay)
+			return overlapping;
+		for(Map.Entry<Integer, ArrayList<Stay>> entry : stays.subMap(startDay - longestStay, false, endDay, false).entrySet())
+			for(int i=0; i<entry.getValue().size(); i++)
+				if(entry.getValue().get(i).endDay > Math.max(startDay, entry.getKey()))
+					overlapping.add(entry.getValue().get(i));
+		return overlapping;
+	}
+
+	/**
+	 * Marks the nights of a given stay that lie within a given range of days as occupied.
+	 * @param stay Stay in this room.
+	 * @param from Epoch day of the first day of the range.
+	 * @param to Epoch day after the last day of the range.
+	 */
+	private void mark(Stay stay, int from, int to)
+	{
+		int start = Math.max(stay.startDay, from);
+		int end = Math.min(stay.endDay, to);
+		if(start < end)
+			update(start, end, true);
+	}
+
+	/**
+	 * Sets or clears the bits of a given range of days within the ring.
+	 * @param start Epoch day of the first day of the range.
+	 * @param end Epoch day after the last day of the range.
+	 * @param occupied Whether to set the bits rather than clear them.
+	 */
+	private void update(int start, int end, boolean occupied)
+	{
+		for(int day = start; day < end; )
+		{
+			int bit = Math.floorMod(day, HORIZON);
+			int nights = Math.min(64 - (bit & 63), end - day);
+			if(occupied)
+				days[bit >>> 6] |= getMask(bit, nights);
+			else
+				days[bit >>> 6] &= ~getMask(bit, nights);
+			day += nights;
+		}
+	}
+
+	/**
+	 * @param bit Position in the ring of the first day.
+	 * @param nights Number of days, not exceeding the end of the word holding the first day.
+	 * @return Returns the mask selecting the given days within their word.
+	 */
+	private static long getMask(int bit, int nights)
+	{
+		return (nights == 64 ? -1L : (1L << nights) - 1) << (bit & 63);
+	}
+
+	/**
+	 * A Reservation of this room together with the epoch days of its first night and of the day after its last night.
+	 * A reservation ending on its start date occupies no nights.
+	 */
+	private static class Stay
+	{
+		private final int startDay, endDay;
+		private final Reservation reservation;
+
+		/**
+		 * Constructs the stay of a given reservation.
+		 * @param _reservation Reservation.
+		 */
+		private Stay(Reservation _reservation)
+		{
+			reservation = _reservation;
+			startDay = reservation.getStartDay();
+			endDay = Math.max(reservation.getEndDay(), startDay);
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package hotelchain;
+
+import java.util.ArrayList;
+
+/**
+ * Lists the Rooms of a single room type in a Hotel, such as all its SingleRooms, together with their number and the
+ * nightly rate of the type. Allows a hotel to look up the rooms of a type without going through rooms of other types.
+ * Also keeps a ledger of the number of rooms of the type booked each night, as a ring of RoomOccupancy.HORIZON days 
+ * starting at ledgerStart, which is updated by the hotel on every reservation and cancellation.
+ * @author Joost Janssen
+ */
+public class RoomTypeInventory
+{
+	private final String roomType;
+	private final ArrayList<Room> rooms = new ArrayList<Room>();
+	private final int[] bookedRooms = new int[RoomOccupancy.HORIZON];
+	private int ledgerStart;
+
+	/**
+	 * Constructs an empty inventory of rooms of the given type.
+	 * @param _roomType Type of room, as returned by Room.toString().
+	 */
+	public RoomTypeInventory(String _roomType)
+	{
+		roomType = _roomType;
+	}
+
+	/**
+	 * Adds a given room of this type to this inventory.
+	 * @param room Room to add.
+	 */
+	protected void addRoom(Room room)
+	{
+		rooms.add(room);
+	}
+
+	/**
+	 * @return Returns the rooms of this type, in the order in which they were added to the hotel.
+	 */
+	protected ArrayList<Room> getRooms()
+	{
+		return rooms;
+	}
+
+	/**
+	 * @return Returns the nightly rate of this type, being the rate of its first room. Returns -1 if there are no rooms of this type.
+	 */
+	protected int getRate()
+	{
+		if(rooms.isEmpty())
+			return -1;
+		return rooms.get(0).getRate();
+	}
+
+	/**
+	 * @return Returns the number of beds in rooms of this type, being the number of beds of its first room. Returns 0 if there are no rooms of this type.
+	 */
+	protected int getNumberOfBeds()
+	{
+		if(rooms.isEmpty())
+			return 0;
+		return rooms.get(0).getNumberOfBeds();
+	}
+
+	/**
+	 * @return Returns the type of the rooms in this inventory.
+	 */
+	public String getRoomType()
+	{
+		return roomType;
+	}
+
+	/**
+	 * Empties the ledger and makes it cover RoomOccupancy.HORIZON days from a given day.
+	 * @param day Epoch day of the first day covered.
+	 */
+	protected void resetLedger(int day)
+	{
+		for(int i=0; i<bookedRooms.length; i++)
+			bookedRooms[i] = 0;
+		ledgerStart = day;
+	}
+
+	/**
+	 * Moves the start of the ledger forward to a given day. The counts of the days added at its end are zero, 
+	 * the caller books the reservations of those days again.
+	 * @param day Epoch day of the new first day covered.
+	 */
+	protected void advanceLedger(int day)
+	{
+		if(day <= ledgerStart)
+			return;
+
+		if(day - ledgerStart >= bookedRooms.length)
+			resetLedger(day);
+		else
+		{
+			for(int d=ledgerStart; d<day; d++)
+				bookedRooms[Math.floorMod(d, bookedRooms.length)] = 0;
+			ledgerStart = day;
+		}
+	}
+
+	/**
+	 * Adds a given number of booked rooms to the nights from a given start day up to a given end day that are covered by the ledger.
+	 * @param startDay Epoch day of the first night.
+	 * @param endDay Epoch day after the last night.
+	 * @param delta Number of rooms booked, or a negative number for cancelled rooms.
+	 */
+	protected void book(int startDay, int endDay, int delta)
+	{
+		int start = Math.max(startDay, ledgerStart);
+		int end = Math.min(endDay, getLedgerEnd());
+		for(int day=start; day<end; day++)
+			bookedRooms[Math.floorMod(day, bookedRooms.length)] += delta;
+	}
+
+	/**
+	 * @param day Epoch day.
+	 * @return Returns whether the ledger covers the given day.
+	 */
+	protected boolean isInLedger(int day)
+	{
+		return day >= ledgerStart && day < getLedgerEnd();
+	}
+
+	/**
+	 * @param day Epoch day covered by the ledger.
+	 * @return Returns the number of rooms of this type that are not booked the night of the given day.
+	 */
+	protected int getAvailableRooms(int day)
+	{
+		return Math.max(0, rooms.size() - bookedRooms[Math.floorMod(day, bookedRooms.length)]);
+	}
+
+	/**
+	 * @return Returns the epoch day after the last day covered by the ledger.
+	 */
+	protected int getLedgerEnd()
+	{
+		return ledgerStart + bookedRooms.length;
+	}
+}
@@ -11,6 +11,7 @@ import java.io.InputStreamReader;
 public class TextInterface
 {
 	protected boolean exitRequested;
+	protected final static int PAGE_SIZE = 10;	// Number of records listed per page.
 	private BufferedReader inputReader;
 		
 	/**
@@ -55,6 +56,17 @@ public class TextInterface
 		return correct;	
 	}
 	
+	/**
+	 * Asks whether to show the next page of a listing.
+	 * @return Returns false if the user entered Q to stop, or else true.
+	 */
+	protected boolean promptNextPage()
+	{
+		System.out.println("> Press Enter to show the next page, or Q to stop: ");
+		String answer = getUserInput();
+		return answer.isEmpty() || Character.toLowerCase(answer.charAt(0)) != 'q';
+	}
+	
 	/**
 	 * Presents a given list of valid user choice options. Last option in the list must be an exit option.
 	 * @param options List of valid user choice options in String format.
@@ -0,0 +1,209 @@
+package hotelchain;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Indexes texts by the sequences of three characters (trigrams) they contain, to find the texts containing a given
+ * text without looking at every text. Each trigram has a posting list: the sorted IDs of the texts containing it.
+ * A text containing a query contains every trigram of the query, so the texts containing a query are among the IDs
+ * found in all posting lists of its trigrams. These lists are intersected starting with the shortest.
+ *
+ * Trigrams are packed into ints of ten bits per character. Trigrams of characters above that range may share a posting
+ * list, so the IDs found are candidates that callers still check against the query. Texts are indexed as given;
+ * callers normalize them, for example to lower case, in the same way as queries.
+ * Not thread-safe.
+ * @author Joost Janssen
+ */
+public class TrigramIndex
+{
+	protected final static int MIN_QUERY_LENGTH = 3;
+
+	private final IntObjectMap<Postings> postings = new IntObjectMap<Postings>();
+	private int texts;
+
+	/**
+	 * Adds a given text.
+	 * @param ID ID of the text, not yet in the index.
+	 * @param text Text.
+	 */
+	protected void add(int ID, String text)
+	{
+		for(int i=0; i+MIN_QUERY_LENGTH<=text.length(); i++)
+		{
+			int trigram = getTrigram(text, i);
+			Postings list = postings.get(trigram);
+			if(list == null)
+			{
+				list = new Postings();
+				postings.put(trigram, list);
+			}
+			list.add(ID);
+		}
+		texts++;
+	}
+
+	/**
+	 * Removes a given text.
+	 * @param ID ID of the text.
+	 * @param text Text, as it was added.
+	 */
+	protected void remove(int ID, String text)
+	{
+		for(int i=0; i+MIN_QUERY_LENGTH<=text.length(); i++)
+		{
+			int trigram = getTrigram(text, i);
+			Postings list = postings.get(trigram);
+			if(list != null && list.remove(ID) && list.size == 0)
+				postings.remove(trigram);
+		}
+		texts--;
+	}
+
+	/**
+	 * Finds the texts that may contain a given query.
+	 * @param query Query, normalized in the same way as the texts.
+	 * @return Returns the IDs of the texts containing all trigrams of the query, in ascending order.
+	 * Returns null if the query is shorter than MIN_QUERY_LENGTH, as any text may contain it.
+	 */
+	protected int[] find(String query)
+	{
+		if(query.length() < MIN_QUERY_LENGTH)
+			return null;
+
+		Postings[] lists = new Postings[query.length() - MIN_QUERY_LENGTH + 1];
+		for(int i=0; i<lists.length; i++)
+		{
+			lists[i] = postings.get(getTrigram(query, i));
+			if(lists[i] == null)
+				return new int[0];
+		}
+		Arrays.sort(lists, new Comparator<Postings>()
+		{
+			public int compare(Postings p1, Postings p2)
+			{
+				return Integer.compare(p1.size, p2.size);
+			}
+		});
+
+		int[] candidates = Arrays.copyOf(lists[0].IDs, lists[0].size);
+		int found = candidates.length;
+		for(int i=1; i<lists.length && found > 0; i++)
+			if(lists[i] != lists[i-1])
+				found = retain(candidates, found, lists[i]);
+		return Arrays.copyOf(candidates, found);
+	}
+
+	/**
+	 * Keeps only the candidates that are in a given posting list. Looks each candidate up by binary search from the
+	 * position of the previous one, so intersecting a short list with a long one takes time logarithmic in the long one.
+	 * @param candidates Candidate IDs in ascending order, overwritten by the retained IDs.
+	 * @param found Number of candidates.
+	 * @param list Posting list.
+	 * @return Returns the number of retained candidates.
+	 */
+	private static int retain(int[] candidates, int found, Postings list)
+	{
+		int retained = 0;
+		int from = 0;
+		for(int i=0; i<found && from<list.size; i++)
+		{
+			int position = Arrays.binarySearch(list.IDs, from, list.size, candidates[i]);
+			if(position >= 0)
+			{
+				candidates[retained++] = candidates[i];
+				from = position + 1;
+			}
+			else
+				from = -position - 1;
+		}
+		return retained;
+	}
+
+	/**
+	 * @return Returns the number of texts in the index.
+	 */
+	protected int size()
+	{
+		return texts;
+	}
+
+	/**
+	 * @return Returns the number of distinct trigrams in the index.
+	 */
+	protected int getNumberOfTrigrams()
+	{
+		return postings.size();
+	}
+
+	/**
+	 * Estimates the memory taken by the index on a 64-bit JVM with compressed references: 16 bytes per array header
+	 * and 24 bytes per posting list object, 4 bytes per reserved ID and 8 bytes per slot of the map of trigrams.
+	 * @return Returns the estimated number of bytes taken by the index.
+	 */
+	protected long getMemoryEstimate()
+	{
+		long bytes = 2 * 16 + 8L * postings.capacity();
+		int[] trigrams = postings.keys();
+		for(int i=0; i<trigrams.length; i++)
+			bytes += 24 + 16 + 4L * postings.get(trigrams[i]).IDs.length;
+		return bytes;
+	}
+
+	/**
+	 * @param text Text.
+	 * @param i Position of the first character of the trigram.
+	 * @return Returns the trigram starting at the given position packed into an int.
+	 */
+	private static int getTrigram(String text, int i)
+	{
+		return (text.charAt(i) & 0x3FF) << 20 | (text.charAt(i+1) & 0x3FF) << 10 | (text.charAt(i+2) & 0x3FF);
+	}
+
+	/**
+	 * The sorted IDs of the texts containing a trigram. IDs are usually added in ascending order and then appended.
+	 */
+	private static class Postings
+	{
+		private int[] IDs = new int[2];
+		private int size;
+
+		/**
+		 * Adds a given ID, unless it is in the list already.
+		 * @param ID ID.
+		 */
+		private void add(int ID)
+		{
+			int position = size;
+			if(size > 0 && IDs[size-1] >= ID)
+			{
+				position = Arrays.binarySearch(IDs, 0, size, ID);
+				if(position >= 0)
+					return;
+				position = -position - 1;
+			}
+			if(size == IDs.length)
+				IDs = Arrays.copyOf(IDs, size + (size >> 1) + 1);
+			System.arraycopy(IDs, position, IDs, position + 1, size - position);
+			IDs[position] = ID;
+			size++;
+		}
+
+		/**
+		 * Removes a given ID.
+		 * @param ID ID.
+		 * @return Returns whether the ID was in the list.
+		 */
+		private boolean remove(int ID)
+		{
+			int position = Arrays.binarySearch(IDs, 0, size, ID);
+			if(position < 0)
+				return false;
+			System.arraycopy(IDs, position + 1, IDs, position, size - position - 1);
+			size--;
+			if(size > 2 && size * 4 < IDs.length)
+				IDs = Arrays.copyOf(IDs, size * 2);
+			return true;
+		}
+	}
+}